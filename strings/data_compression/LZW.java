@@ -9,17 +9,17 @@
  ******************************************************************************/
 package strings.data_compression;
 
-import strings.tries.TST;
+import strings.tries.IntTST;
 
 /**
  *  The {@code LZW} class provides static methods for compressing
  *  and expanding a binary input using LZW compression over the 8-bit extended
  *  ASCII alphabet with 12-bit codewords.
  *
- *  WARNING: Starting with Oracle Java 7u6, the substring method takes time and
- *  space linear in the length of the extracted substring (instead of constant
- *  time an space as in earlier versions). As a result, compression takes
- *  quadratic time. TODO: fix.
+ *  The codewords are kept in an {@link IntTST}, which is searched and updated
+ *  in place over the input, so compression takes no substrings of the input
+ *  (which would take time linear in their length, and quadratic time overall,
+ *  since Oracle Java 7u6) and boxes no codewords.
  */
 public class LZW {
     private static final int R = 256; // number of input chars
@@ -37,21 +37,26 @@ public class LZW {
      */
     public static void compress() {
         String input = BinaryStdIn.readString();
-        TST<Integer> st = new TST<Integer>();
+        IntTST st = new IntTST(L);
 
-        // since TST is not balanced, it would be better to insert in a different order
-        for (int i = 0; i < R; i++)
-            st.put("" + (char) i, i);
+        // bulk load the single characters, so the TST is balanced
+        String[] chars = new String[R];
+        int[] codes = new int[R];
+        for (int i = 0; i < R; i++) {
+            chars[i] = "" + (char) i;
+            codes[i] = i;
+        }
+        st.putAll(chars, codes);
 
         int code = R+1;  // next entry codeword, R is codeword for EOF
 
-        while (input.length() > 0) {
-            String s = st.longestPrefixOf(input); // Find max prefix match s.
-            BinaryStdOut.write(st.get(s), W); // write s's encoding.
-            int t = s.length();
-            if (t < input.length() && code < L) // Add s to symbol table.
-                st.put(input.substring(0, t + 1), code++);
-            input = input.substring(t); // Scan past s in input.
+        int i = 0; // start of the unscanned input
+        while (i < input.length()) {
+            int t = st.longestPrefixLength(input, i); // Find max prefix match s.
+            BinaryStdOut.write(st.get(input, i, t), W); // write s's encoding.
+            if (i + t < input.length() && code < L) // Add s to symbol table.
+                st.put(input, i, t + 1, code++);
+            i += t; // Scan past s in input.
         }
         BinaryStdOut.write(R, W);
         BinaryStdOut.close();
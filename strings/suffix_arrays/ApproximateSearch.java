@@ -0,0 +1,226 @@
+package strings.suffix_arrays;
+/******************************************************************************
+ *  Compilation:  javac ApproximateSearch.java
+ *  Execution:    java ApproximateSearch file.txt k [edit]
+ *  Dependencies: SuffixArray.java
+ *
+ *  Approximate search in a suffix array. Reads a text from a file, then
+ *  repeatedly reads query strings from standard input and prints the number
+ *  and the offsets of their occurrences with at most k mismatches, or with
+ *  edit distance at most k if edit is given.
+ *
+ *  % java ApproximateSearch abra.txt 1
+ *  ABRA
+ *  2: 0 7
+ *  ACRA
+ *  2: 0 7
+ *  ADA
+ *  2: 3 5
+ *
+ *  % java ApproximateSearch abra.txt 1 edit
+ *  ADA
+ *  4: 3 4 5 6
+ *
+ ******************************************************************************/
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.Scanner;
+import java.util.stream.IntStream;
+
+/**
+ *  The {@code ApproximateSearch} class provides a {@link SuffixArray} client
+ *  for finding the approximate occurrences of a pattern in a string: those
+ *  with at most k mismatches (Hamming distance), or those with edit distance
+ *  at most k.
+ *
+ *  This implementation backtracks over the intervals of the suffix array.
+ *  The suffixes that share a prefix of length d form an interval, which is
+ *  split into the intervals of its extensions by binary search on the
+ *  character at depth d. An extension is followed only while the prefix can
+ *  still be completed into an occurrence, so for small k only a small part of
+ *  the suffix array is visited, rather than every position of the string.
+ *  When no mismatches are left, the interval of the rest of the pattern is
+ *  found directly, as in exact search.
+ */
+public class ApproximateSearch {
+    private final SuffixArray sa;
+    private final CharSequence text;
+    private final String pattern;
+    private final int k;
+    private final IntStream.Builder offsets = IntStream.builder();
+    private int[][] rows; // rows[d] = edit distances of the pattern prefixes to the text prefix of length d
+
+    private ApproximateSearch(SuffixArray sa, String pattern, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must be non-negative");
+        }
+        this.sa = sa;
+        this.text = sa.text();
+        this.pattern = pattern;
+        this.k = k;
+    }
+
+    /**
+     * Returns the offsets of all substrings of the string of the suffix array
+     * that have the length of the pattern and differ from it in at most k
+     * positions.
+     *
+     * @param  sa the suffix array
+     * @param  pattern the pattern
+     * @param  k the maximum number of mismatches
+     * @return offsets of the occurrences with at most k mismatches, in suffix order
+     * @throws IllegalArgumentException if {@code k < 0}
+     */
+    public static int[] mismatches(SuffixArray sa, String pattern, int k) {
+        ApproximateSearch search = new ApproximateSearch(sa, pattern, k);
+        search.mismatches(0, sa.length(), 0, k);
+        return search.offsets.build().toArray();
+    }
+
+    /**
+     * Returns the offsets at which a substring of the string of the suffix
+     * array starts whose edit distance (with insertions, deletions and
+     * substitutions) to the pattern is at most k. Each offset is reported
+     * once, however many such substrings start there.
+     *
+     * @param  sa the suffix array
+     * @param  pattern the pattern
+     * @param  k the maximum edit distance
+     * @return offsets of the occurrences within edit distance k, in suffix order
+     * @throws IllegalArgumentException if {@code k < 0}
+     */
+    public static int[] editDistance(SuffixArray sa, String pattern, int k) {
+        ApproximateSearch search = new ApproximateSearch(sa, pattern, k);
+        int m = pattern.length();
+        search.rows = new int[m + k + 1][m + 1];
+        for (int j = 0; j <= m; j++) {
+            search.rows[0][j] = j;
+        }
+        search.editDistance(0, sa.length(), 0);
+        return search.offsets.build().toArray();
+    }
+
+    // suffixes of order lo through hi-1 match the first depth characters of
+    // the pattern with budget mismatches left
+    private void mismatches(int lo, int hi, int depth, int budget) {
+        if (depth == pattern.length()) {
+            report(lo, hi);
+            return;
+        }
+        if (budget == 0) {
+            int c = pattern.charAt(depth);
+            int from = above(lo, hi, depth, c - 1);
+            mismatches(from, above(from, hi, depth, c), depth + 1, 0);
+            return;
+        }
+        int i = lo;
+        if (i < hi && key(i, depth) < 0) {
+            i++; // the suffix of length depth, too short to match
+        }
+        while (i < hi) {
+            int c = key(i, depth);
+            int j = above(i, hi, depth, c);
+            mismatches(i, j, depth + 1, c == pattern.charAt(depth) ? budget : budget - 1);
+            i = j;
+        }
+    }
+
+    // suffixes of order lo through hi-1 share a prefix of length depth,
+    // whose edit distances to the pattern prefixes are rows[depth]
+    private void editDistance(int lo, int hi, int depth) {
+        int m = pattern.length();
+        int[] row = rows[depth];
+        if (row[m] <= k) {
+            report(lo, hi);
+            return;
+        }
+        if (depth + 1 == rows.length) {
+            return;
+        }
+        int[] next = rows[depth + 1];
+        int i = lo;
+        if (i < hi && key(i, depth) < 0) {
+            i++;
+        }
+        while (i < hi) {
+            int c = key(i, depth);
+            int j = above(i, hi, depth, c);
+            next[0] = depth + 1;
+            int min = next[0];
+            for (int q = 1; q <= m; q++) {
+                int cost = pattern.charAt(q - 1) == c ? 0 : 1;
+                next[q] = Math.min(row[q - 1] + cost, Math.min(row[q], next[q - 1]) + 1);
+                min = Math.min(min, next[q]);
+            }
+            if (min <= k) {
+                editDistance(i, j, depth + 1);
+            }
+            i = j;
+        }
+    }
+
+    private void report(int lo, int hi) {
+        for (int i = lo; i < hi; i++) {
+            offsets.add(sa.index(i));
+        }
+    }
+
+    // character at the given depth of the suffix of order i, or -1 if the suffix is that short
+    private int key(int i, int depth) {
+        int p = sa.index(i) + depth;
+        return p < text.length() ? text.charAt(p) : -1;
+    }
+
+    // first order in [lo, hi) whose key at depth exceeds c, or hi if none;
+    // keys at depth are nondecreasing in the interval
+    private int above(int lo, int hi, int depth, int c) {
+        while (lo < hi) {
+            int mid = lo + (hi - lo) / 2;
+            if (key(mid, depth) <= c) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Reads a string from a file specified as the first command-line
+     * argument and the maximum number of differences k as the second,
+     * then prints the number of approximate occurrences and their offsets
+     * of each query string read from standard input.
+     *
+     * @param argv the command-line arguments
+     */
+    public static void main(String[] argv) {
+        try {
+            Scanner fileReader = new Scanner(new File(argv[0]));
+            StringBuilder stringBuilder = new StringBuilder();
+            while (fileReader.hasNextLine()) {
+                stringBuilder.append(fileReader.nextLine() + " ");
+            }
+            fileReader.close();
+            String text = stringBuilder.toString().replaceAll("\\s+", " ");
+            int k = Integer.parseInt(argv[1]);
+            boolean edit = argv.length > 2 && argv[2].equals("edit");
+            SuffixArray sa = new SuffixArray(text);
+            Scanner stdReader = new Scanner(System.in);
+            while (stdReader.hasNextLine()) {
+                String query = stdReader.nextLine();
+                int[] offsets = edit ? editDistance(sa, query, k) : mismatches(sa, query, k);
+                Arrays.sort(offsets);
+                StringBuilder line = new StringBuilder(offsets.length + ":");
+                for (int offset : offsets) {
+                    line.append(" ").append(offset);
+                }
+                System.out.println(line);
+            }
+        } catch (FileNotFoundException e) {
+            System.out.println("Cannot open specified file");
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package strings.suffix_arrays;
+/******************************************************************************
+ *  Compilation:  javac ByteSequence.java
+ *
+ *  A read-only view of a byte buffer as a sequence of chars.
+ *
+ ******************************************************************************/
+
+import java.nio.ByteBuffer;
+import java.util.function.IntUnaryOperator;
+
+/**
+ *  The {@code ByteSequence} class presents the bytes between the position and
+ *  the limit of a {@link ByteBuffer} as a {@link CharSequence}, where each
+ *  byte is the char with the same unsigned value (0 through 255). Nothing is
+ *  copied or decoded, so the buffer may be a memory-mapped file, and only
+ *  absolute reads are used, so the view may be shared between threads.
+ */
+final class ByteSequence implements CharSequence {
+    private final ByteBuffer bytes;
+
+    /**
+     * Initializes a view of the remaining bytes of the given buffer.
+     * @param buffer the buffer; its position and limit are not changed
+     */
+    ByteSequence(ByteBuffer buffer) {
+        bytes = buffer.slice();
+    }
+
+    /**
+     * Initializes a view of the given bytes.
+     * @param bytes the bytes
+     */
+    ByteSequence(byte[] bytes) {
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    @Override
+    public int length() {
+        return bytes.limit();
+    }
+
+    @Override
+    public char charAt(int i) {
+        return (char) (bytes.get(i) & 0xFF);
+    }
+
+    /**
+     * Returns the unsigned value of each byte by its offset, read straight
+     * from the backing array when the buffer has an accessible one.
+     * @return the function from offset to unsigned byte value
+     */
+    IntUnaryOperator symbols() {
+        if (bytes.hasArray()) {
+            byte[] array = bytes.array();
+            int offset = bytes.arrayOffset();
+            return i -> array[offset + i] & 0xFF;
+        }
+        return i -> bytes.get(i) & 0xFF;
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        ByteBuffer view = bytes.duplicate();
+        view.position(start).limit(end);
+        return new ByteSequence(view);
+    }
+
+    @Override
+    public String toString() {
+        char[] chars = new char[length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = charAt(i);
+        }
+        return new String(chars);
+    }
+}
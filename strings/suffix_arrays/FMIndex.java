@@ -0,0 +1,323 @@
+package strings.suffix_arrays;
+/******************************************************************************
+ *  Compilation:  javac FMIndex.java
+ *  Execution:    java FMIndex file.txt
+ *  Dependencies: SuffixArray.java
+ *
+ *  Compressed full-text index based on the Burrows-Wheeler transform.
+ *  Reads a text from a file, then repeatedly reads query strings from
+ *  standard input and prints the number of occurrences and their offsets.
+ *
+ *  % java FMIndex abra.txt
+ *  ABRA
+ *  2: 0 7
+ *  BRA
+ *  2: 1 8
+ *
+ ******************************************************************************/
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.Scanner;
+
+/**
+ *  The {@code FMIndex} class represents an FM-index of a string of length n:
+ *  the Burrows-Wheeler transform (BWT) of the string, cumulative symbol counts
+ *  taken at regular checkpoints of the BWT, and a sample of the suffix array.
+ *  It supports counting the occurrences of a pattern and locating their
+ *  offsets in the string, by backward search, without keeping the string
+ *  or the full suffix array.
+ *
+ *  This implementation builds the index from a {@link SuffixArray}.
+ *  The BWT takes one byte per character when the string has fewer than 256
+ *  distinct characters and two bytes otherwise, and the suffix array sample
+ *  4 / sampleRate bytes per character. The symbol counts are kept on two
+ *  levels: an {@code int} per symbol every 65536 rows, and a {@code char}
+ *  relative to it every {@code checkpoint} rows, about 2 sigma / checkpoint
+ *  bytes per character, where sigma is the number of distinct characters.
+ *  By default the checkpoint interval is the smallest power of two, at least
+ *  64, for which that is at most one byte per character, so a string with
+ *  fewer than 256 distinct characters and the default sample rate of 32
+ *  takes at most about 2.3 bytes per character, against 4 for the
+ *  {@code int} suffix array alone. The interval is 64 for sigma up to 32,
+ *  for example, and 256 for the 100 or so characters of printable ASCII.
+ *  A shorter interval trades space for speed.
+ *  The count operation takes time proportional to m checkpoint, where m is
+ *  the length of the pattern (half a checkpoint interval of the BWT is
+ *  scanned per character at most), and the locate operation additionally
+ *  takes time proportional to sampleRate checkpoint for each occurrence.
+ */
+public class FMIndex {
+    private static final int MIN_CHECKPOINT = 64; // shortest default interval between relative counts
+    private static final int SUPERBLOCK = 1 << 16; // longest interval between absolute counts
+    private static final int DEFAULT_SAMPLE_RATE = 32;
+
+    private final int n; // length of the string; the BWT has n + 1 rows, row 0 being the sentinel suffix
+    private final char[] alphabet; // distinct characters of the string, sorted; symbol c + 1 is alphabet[c]
+    private final byte[] bwtBytes; // BWT as symbols when there are at most 256 of them, else null
+    private final char[] bwtChars; // BWT as symbols otherwise
+    private final int[] first; // first[c] = number of BWT symbols smaller than c
+    private final int checkpoint; // rows between relative counts
+    private final int perSuperblock; // relative counts between absolute counts
+    private final int[][] superCounts; // superCounts[c][s] = occurrences of symbol c in rows [0, s * perSuperblock * checkpoint)
+    private final char[][] blockCounts; // blockCounts[c][k] = occurrences of c in rows [0, k * checkpoint), less the absolute count before
+    private final long[] sampled; // bit r is set iff the offset of row r is divisible by the sample rate
+    private final int[] sampledBefore; // sampledBefore[w] = number of set bits in sampled[0..w-1]
+    private final int[] samples; // offsets of the sampled rows, in row order
+
+    /**
+     * Builds the FM-index of the string of the given suffix array.
+     * @param sa the suffix array
+     */
+    public FMIndex(SuffixArray sa) {
+        this(sa, DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * Builds the FM-index of the string of the given suffix array, keeping the
+     * offset of one in every {@code sampleRate} positions.
+     * @param sa the suffix array
+     * @param sampleRate the suffix array sampling rate
+     * @throws IllegalArgumentException if {@code sampleRate < 1}
+     */
+    public FMIndex(SuffixArray sa, int sampleRate) {
+        this(sa, sampleRate, 0);
+    }
+
+    /**
+     * Builds the FM-index of the string of the given suffix array, keeping the
+     * offset of one in every {@code sampleRate} positions and the symbol
+     * counts of one in every {@code checkpoint} rows of the BWT.
+     * @param sa the suffix array
+     * @param sampleRate the suffix array sampling rate
+     * @param checkpoint the interval between symbol counts, between 1 and 65536,
+     *        or 0 to choose it from the number of distinct characters
+     * @throws IllegalArgumentException if {@code sampleRate < 1}
+     * @throws IllegalArgumentException unless {@code 0 <= checkpoint <= 65536}
+     */
+    public FMIndex(SuffixArray sa, int sampleRate, int checkpoint) {
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("sample rate must be positive");
+        }
+        if (checkpoint < 0 || checkpoint > SUPERBLOCK) {
+            throw new IllegalArgumentException("checkpoint interval must be between 0 and " + SUPERBLOCK);
+        }
+        CharSequence text = sa.text();
+        this.n = text.length();
+
+        // alphabet
+        boolean[] present = new boolean[Character.MAX_VALUE + 1];
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (!present[text.charAt(i)]) {
+                present[text.charAt(i)] = true;
+                distinct++;
+            }
+        }
+        alphabet = new char[distinct];
+        for (int c = 0, j = 0; c <= Character.MAX_VALUE; c++) {
+            if (present[c]) {
+                alphabet[j++] = (char) c;
+            }
+        }
+        int sigma = distinct + 1;
+
+        // BWT, row 0 is the empty suffix (the sentinel, symbol 0)
+        int rows = n + 1;
+        bwtBytes = sigma <= 256 ? new byte[rows] : null;
+        bwtChars = sigma <= 256 ? null : new char[rows];
+        sampled = new long[(rows + 63) / 64];
+        samples = new int[(n + sampleRate - 1) / sampleRate];
+        int count = 0;
+        for (int r = 0; r < rows; r++) {
+            int offset = r == 0 ? n : sa.index(r - 1);
+            int symbol = offset == 0 ? 0 : symbolOf(text.charAt(offset - 1));
+            if (bwtBytes != null) {
+                bwtBytes[r] = (byte) symbol;
+            } else {
+                bwtChars[r] = (char) symbol;
+            }
+            if (offset % sampleRate == 0 && offset < n) {
+                sampled[r >>> 6] |= 1L << r;
+                samples[count++] = offset;
+            }
+        }
+        sampledBefore = new int[sampled.length];
+        for (int w = 1; w < sampled.length; w++) {
+            sampledBefore[w] = sampledBefore[w-1] + Long.bitCount(sampled[w-1]);
+        }
+
+        // two-level counts and first-column offsets; the last relative count
+        // is the total, for counting backwards from the end of the last block
+        if (checkpoint == 0) {
+            checkpoint = MIN_CHECKPOINT;
+            while (checkpoint < SUPERBLOCK && 2L * sigma > checkpoint) {
+                checkpoint *= 2;
+            }
+        }
+        this.checkpoint = checkpoint;
+        perSuperblock = SUPERBLOCK / checkpoint;
+        int blocks = (rows + checkpoint - 1) / checkpoint;
+        superCounts = new int[sigma][blocks / perSuperblock + 1];
+        blockCounts = new char[sigma][blocks + 1];
+        int[] running = new int[sigma];
+        for (int r = 0; r <= rows; r++) {
+            if (r % checkpoint == 0 || r == rows) {
+                int k = (r + checkpoint - 1) / checkpoint;
+                int sb = k / perSuperblock;
+                for (int c = 0; c < sigma; c++) {
+                    if (k % perSuperblock == 0) {
+                        superCounts[c][sb] = running[c];
+                    }
+                    blockCounts[c][k] = (char) (running[c] - superCounts[c][sb]);
+                }
+            }
+            if (r < rows) {
+                running[symbolAt(r)]++;
+            }
+        }
+        first = new int[sigma + 1];
+        for (int c = 0; c < sigma; c++) {
+            first[c + 1] = first[c] + running[c];
+        }
+    }
+
+    /**
+     * Size of string
+     * @return size of string
+     */
+    public int length() {
+        return n;
+    }
+
+    /**
+     * number of occurrences of pattern in the string
+     * @param pattern the pattern
+     * @return number of occurrences of pattern in the string
+     */
+    public int count(String pattern) {
+        int[] rows = search(pattern);
+        return rows[1] - rows[0];
+    }
+
+    /**
+     * offsets of all occurrences of pattern in the string, in suffix order
+     * @param pattern the pattern
+     * @return offsets of all occurrences of pattern in the string
+     */
+    public int[] locate(String pattern) {
+        int[] rows = search(pattern);
+        int[] offsets = new int[rows[1] - rows[0]];
+        for (int r = rows[0]; r < rows[1]; r++) {
+            offsets[r - rows[0]] = offset(r);
+        }
+        return offsets;
+    }
+
+    /**
+     * backward search: the BWT rows whose suffixes start with pattern
+     * @param pattern the pattern
+     * @return the interval [lo, hi) of rows, as the array {lo, hi}
+     */
+    private int[] search(String pattern) {
+        if (pattern.length() == 0) {
+            return new int[] { 1, n + 1 }; // every non-empty suffix
+        }
+        int lo = 0;
+        int hi = n + 1;
+        for (int i = pattern.length() - 1; i >= 0 && lo < hi; i--) {
+            int c = symbolOf(pattern.charAt(i));
+            if (c < 0) {
+                return new int[] { 0, 0 };
+            }
+            lo = first[c] + rank(c, lo);
+            hi = first[c] + rank(c, hi);
+        }
+        return lo < hi ? new int[] { lo, hi } : new int[] { 0, 0 };
+    }
+
+    // offset in the string of the suffix of row r, found by walking LF to a sampled row
+    private int offset(int r) {
+        int steps = 0;
+        while ((sampled[r >>> 6] & (1L << r)) == 0) {
+            int c = symbolAt(r);
+            r = first[c] + rank(c, r);
+            steps++;
+        }
+        int before = sampledBefore[r >>> 6] + Long.bitCount(sampled[r >>> 6] & ((1L << r) - 1));
+        return samples[before] + steps;
+    }
+
+    // number of occurrences of symbol c in BWT rows [0, r), counted from the
+    // nearer of the counts before and after r
+    private int rank(int c, int r) {
+        int k = r / checkpoint;
+        int from = k * checkpoint;
+        int to = Math.min(from + checkpoint, n + 1);
+        if (r - from <= to - r) {
+            int count = countBefore(c, k);
+            for (int i = from; i < r; i++) {
+                if (symbolAt(i) == c) {
+                    count++;
+                }
+            }
+            return count;
+        }
+        int count = countBefore(c, k + 1);
+        for (int i = r; i < to; i++) {
+            if (symbolAt(i) == c) {
+                count--;
+            }
+        }
+        return count;
+    }
+
+    // number of occurrences of symbol c before block k (or the end of the BWT)
+    private int countBefore(int c, int k) {
+        return superCounts[c][k / perSuperblock] + blockCounts[c][k];
+    }
+
+    private int symbolAt(int r) {
+        return bwtBytes != null ? bwtBytes[r] & 0xFF : bwtChars[r];
+    }
+
+    // symbol of character ch, or -1 if ch does not occur in the string
+    private int symbolOf(char ch) {
+        int c = Arrays.binarySearch(alphabet, ch);
+        return c < 0 ? -1 : c + 1;
+    }
+
+    /**
+     * Reads a string from a file specified as the first command-line
+     * argument, then prints the number of occurrences and the offsets
+     * of each query string read from standard input.
+     *
+     * @param argv the command-line arguments
+     */
+    public static void main(String[] argv) {
+        try {
+            Scanner fileReader = new Scanner(new File(argv[0]));
+            StringBuilder stringBuilder = new StringBuilder();
+            while (fileReader.hasNextLine()) {
+                stringBuilder.append(fileReader.nextLine() + " ");
+            }
+            fileReader.close();
+            String text = stringBuilder.toString().replaceAll("\\s+", " ");
+            FMIndex index = new FMIndex(new SuffixArray(text));
+            Scanner stdReader = new Scanner(System.in);
+            while (stdReader.hasNextLine()) {
+                int[] offsets = index.locate(stdReader.nextLine());
+                Arrays.sort(offsets);
+                StringBuilder line = new StringBuilder(offsets.length + ":");
+                for (int offset : offsets) {
+                    line.append(" ").append(offset);
+                }
+                System.out.println(line);
+            }
+        } catch (FileNotFoundException e) {
+            System.out.println("Cannot open specified file");
+            e.printStackTrace();
+        }
+    }
+}
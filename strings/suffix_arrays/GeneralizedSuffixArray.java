@@ -0,0 +1,173 @@
+package strings.suffix_arrays;
+/******************************************************************************
+ *  Compilation:  javac GeneralizedSuffixArray.java
+ *  Execution:    java GeneralizedSuffixArray file1.txt file2.txt ...
+ *  Dependencies: SuffixArray.java
+ *
+ *  A data type that computes one suffix array of a collection of documents.
+ *  Reads the documents from the files named on the command line, then
+ *  repeatedly reads query strings from standard input and prints the
+ *  document and offset of every occurrence.
+ *
+ *  % java GeneralizedSuffixArray abra.txt tinyTale.txt
+ *  it was
+ *  tinyTale.txt:0
+ *  tinyTale.txt:25
+ *  tinyTale.txt:51
+ *  ...
+ *
+ ******************************************************************************/
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Scanner;
+import java.util.stream.IntStream;
+
+/**
+ *  The {@code GeneralizedSuffixArray} class represents a suffix array of a
+ *  collection of documents. The documents are concatenated into one text,
+ *  each followed by a separator, and every position of the text records the
+ *  document it belongs to, so an occurrence found in the text is mapped to
+ *  its document and its offset within that document in constant time.
+ *
+ *  This implementation sorts the suffixes of the text with a distinct
+ *  sentinel symbol for each separator, smaller than every character, so no
+ *  common prefix runs across the end of a document. In the text itself the
+ *  separators are the character {@code '\0'}, which therefore must not occur
+ *  in the documents; queries containing it have no occurrences.
+ *  The LCP array is always computed.
+ */
+public class GeneralizedSuffixArray {
+    private static final char SEPARATOR = '\0';
+
+    private final SuffixArray suffixArray; // suffix array of the concatenated text
+    private final int[] documentOf; // documentOf[p] = document of text position p
+    private final int[] start; // start[d] = position of document d in the text
+
+    /**
+     * Initializes a generalized suffix array for the given documents.
+     * @param documents the documents
+     * @throws IllegalArgumentException if a document contains the character {@code '\0'}
+     */
+    public GeneralizedSuffixArray(String[] documents) {
+        int d = documents.length;
+        int length = d;
+        for (String document : documents) {
+            length += document.length();
+        }
+        char[] text = new char[length];
+        int[] symbols = new int[length];
+        documentOf = new int[length];
+        start = new int[d];
+        int p = 0;
+        for (int k = 0; k < d; k++) {
+            String document = documents[k];
+            start[k] = p;
+            for (int i = 0; i < document.length(); i++) {
+                char c = document.charAt(i);
+                if (c == SEPARATOR) {
+                    throw new IllegalArgumentException("document " + k + " contains the separator character");
+                }
+                text[p] = c;
+                symbols[p] = c + d; // separators take symbols 0 through d-1
+                documentOf[p++] = k;
+            }
+            text[p] = SEPARATOR;
+            symbols[p] = k;
+            documentOf[p++] = k;
+        }
+        suffixArray = new SuffixArray(new String(text), symbols, true, 0, 1);
+    }
+
+    /**
+     * suffix array of the concatenated text, in which each document is
+     * followed by the character {@code '\0'}
+     * @return the suffix array of the concatenated text
+     */
+    public SuffixArray suffixArray() {
+        return suffixArray;
+    }
+
+    /**
+     * number of documents
+     * @return number of documents
+     */
+    public int documents() {
+        return start.length;
+    }
+
+    /**
+     * document containing the given position of the concatenated text
+     * @param position a position in the concatenated text
+     * @return the document containing it (the document a separator follows)
+     */
+    public int document(int position) {
+        return documentOf[position];
+    }
+
+    /**
+     * offset of the given position of the concatenated text within its document
+     * @param position a position in the concatenated text
+     * @return offset of the position within its document
+     */
+    public int offset(int position) {
+        return position - start[documentOf[position]];
+    }
+
+    /**
+     * range of the suffixes of the concatenated text that start with query
+     * @param query query string
+     * @return the interval [first, last) of orders in the suffix array,
+     *         as the array {first, last}
+     */
+    public int[] range(String query) {
+        if (query.indexOf(SEPARATOR) >= 0) {
+            return new int[] { 0, 0 };
+        }
+        return suffixArray.range(query);
+    }
+
+    /**
+     * positions in the concatenated text of all occurrences of query, in
+     * suffix order; use {@link #document(int)} and {@link #offset(int)} to
+     * map them to documents
+     * @param query query string
+     * @return positions of all occurrences of query
+     */
+    public IntStream occurrences(String query) {
+        int[] range = range(query);
+        return IntStream.range(range[0], range[1]).map(suffixArray::index);
+    }
+
+    /**
+     * Reads documents from the files named as command-line arguments, then
+     * prints the file and offset of every occurrence of each query string
+     * read from standard input.
+     *
+     * @param argv the command-line arguments
+     */
+    public static void main(String[] argv) {
+        try {
+            String[] documents = new String[argv.length];
+            for (int k = 0; k < argv.length; k++) {
+                Scanner fileReader = new Scanner(new File(argv[k]));
+                StringBuilder stringBuilder = new StringBuilder();
+                while (fileReader.hasNextLine()) {
+                    stringBuilder.append(fileReader.nextLine() + " ");
+                }
+                fileReader.close();
+                documents[k] = stringBuilder.toString().replaceAll("\\s+", " ");
+            }
+            GeneralizedSuffixArray gsa = new GeneralizedSuffixArray(documents);
+            Scanner stdReader = new Scanner(System.in);
+            while (stdReader.hasNextLine()) {
+                gsa.occurrences(stdReader.nextLine()).sorted().forEach(position ->
+                    System.out.println(argv[gsa.document(position)] + ":" + gsa.offset(position)));
+                System.out.println();
+            }
+        } catch (FileNotFoundException e) {
+            System.out.println("Cannot open specified file");
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,8 +1,8 @@
 package strings.suffix_arrays;
 /******************************************************************************
  *  Compilation:  javac KWIC.java
- *  Execution:    java KWIC file.txt
- *  Dependencies: SuffixArray.java
+ *  Execution:    java KWIC file.txt k [index.sa] [-batch threads]
+ *  Dependencies: SuffixArray.java NormalizedText.java
  *
  *  Keyword-in-context search.
  *
@@ -37,14 +37,96 @@ package strings.suffix_arrays;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PrimitiveIterator;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  *  The {@code KWIC} class provides a {@link SuffixArray} client for computing
  *  all occurrences of a keyword in a given string, with surrounding context.
  *  This is known as keyword-in-context search.
+ *
+ *  Queries are answered one at a time as they are read, or, in batch mode,
+ *  all at once: the batch is sorted so that each worker thread answers a run
+ *  of neighbouring queries, which probe neighbouring parts of the suffix
+ *  array, and the results are written in the order the queries were given.
  */
 public class KWIC {
+    private static final String NEWLINE = System.getProperty("line.separator");
+
+    /**
+     * Answers a batch of queries against the given suffix array on the given
+     * number of threads. The suffix array is only read, so it is shared by all
+     * of them.
+     *
+     * @param suffixArray the suffix array of the text
+     * @param text the characters of the text
+     * @param queries the queries
+     * @param contextLength the number of characters of context on either side
+     * @param threads the number of worker threads
+     * @return for each query, in the order given, the lines of context of its
+     *         occurrences, each followed by a line separator
+     * @throws IllegalArgumentException if {@code threads < 1}
+     */
+    public static String[] search(SuffixArray suffixArray, char[] text, String[] queries, int contextLength, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("number of threads must be positive");
+        }
+        Integer[] order = new Integer[queries.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> queries[a].compareTo(queries[b]));
+        String[] results = new String[queries.length];
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                int from = (int) ((long) order.length * t / threads);
+                int to = (int) ((long) order.length * (t + 1) / threads);
+                tasks.add(pool.submit(() -> {
+                    StringBuilder contexts = new StringBuilder();
+                    for (int j = from; j < to; j++) {
+                        int q = order[j];
+                        if (j > from && queries[q].equals(queries[order[j-1]])) {
+                            results[q] = results[order[j-1]];
+                            continue;
+                        }
+                        contexts.setLength(0);
+                        appendContexts(suffixArray, text, queries[q], contextLength, contexts);
+                        results[q] = contexts.toString();
+                    }
+                }));
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return results;
+    }
+
+    // appends a line of context for every occurrence of query, straight from the text's chars
+    private static void appendContexts(SuffixArray suffixArray, char[] text, String query, int contextLength,
+                                       StringBuilder out) {
+        int textLength = suffixArray.length();
+        PrimitiveIterator.OfInt occurrences = suffixArray.occurrences(query).iterator();
+        while (occurrences.hasNext()) {
+            int offset = occurrences.nextInt();
+            int from = Math.max(0, offset - contextLength);
+            int to = Math.min(textLength, offset + query.length() + contextLength);
+            out.append(text, from, to - from).append(NEWLINE);
+        }
+    }
+
     /**
      * Reads a string from a file specified as the first
      * command-line argument; read an integer k specified as the
@@ -52,43 +134,68 @@ public class KWIC {
      * use queries, printing all occurrences of the given query
      * string in the text string with k characters of surrounding
      * context on either side.
+     * If an index file is given as the third command-line argument, the
+     * suffix array is loaded from it when it exists and saved to it otherwise.
+     * With the option {@code -batch n}, all queries are read first and then
+     * answered on n threads.
      *
      * @param argv the command-line arguments
      */
     public static void main(String[] argv) {
+        List<String> args = new ArrayList<>();
+        int threads = 0; // 0 for interactive mode
+        for (int i = 0; i < argv.length; i++) {
+            if (argv[i].equals("-batch")) {
+                threads = Integer.parseInt(argv[++i]);
+            } else {
+                args.add(argv[i]);
+            }
+        }
         try {
-            // read in text
-            File file = new File(argv[0]);
-            Scanner fileReader = new Scanner(file);
-            StringBuilder stringBuilder = new StringBuilder();
-            while (fileReader.hasNextLine()) {
-                stringBuilder.append(fileReader.nextLine() + " ");
+            // read in text, with whitespace normalized
+            CharBuffer text = NormalizedText.read(new File(args.get(0)));
+            int contextLength = Integer.parseInt(args.get(1)); // context length of keyword occurrence
+            char[] chars = text.array(); // context windows are written straight from here
+            // build suffix array, or map it from the index file
+            SuffixArray suffixArray;
+            File indexFile = args.size() > 2 ? new File(args.get(2)) : null;
+            if (indexFile != null && indexFile.exists()) {
+                suffixArray = SuffixArray.load(text, indexFile);
+            } else {
+                suffixArray = new SuffixArray(text);
+                if (indexFile != null) {
+                    suffixArray.save(indexFile);
+                }
             }
-            fileReader.close();
-            String text = stringBuilder.toString().replaceAll("\\s+", " ");
-            int contextLength = Integer.parseInt(argv[1]); // context length of keyword occurrence
-            int textLength = text.length();
-            // build suffix array
-            SuffixArray suffixArray = new SuffixArray(text);
             // find all occurrences of queries and give context
+            PrintWriter out = new PrintWriter(System.out);
             Scanner stdReader = new Scanner(System.in);
-            while (stdReader.hasNextLine()) {
-                String query = stdReader.nextLine();
-                for (int i = suffixArray.rank(query); i < textLength; i++) {
-                    int from1 = suffixArray.index(i);
-                    int to1 = Math.min(textLength, from1 + query.length());
-                    if (!query.equals(text.substring(from1, to1))) {
-                        break;
-                    }
-                    int from2 = Math.max(0, suffixArray.index(i) - contextLength);
-                    int to2 = Math.min(textLength, suffixArray.index(i) + query.length() + contextLength);
-                    System.out.println(text.substring(from2, to2));
+            if (threads > 0) {
+                List<String> queries = new ArrayList<>();
+                while (stdReader.hasNextLine()) {
+                    queries.add(stdReader.nextLine());
+                }
+                for (String contexts : search(suffixArray, chars, queries.toArray(new String[0]), contextLength, threads)) {
+                    out.print(contexts);
+                    out.println();
                 }
-                System.out.println();
+                out.flush();
+                return;
+            }
+            StringBuilder contexts = new StringBuilder();
+            while (stdReader.hasNextLine()) {
+                contexts.setLength(0);
+                appendContexts(suffixArray, chars, stdReader.nextLine(), contextLength, contexts);
+                out.append(contexts);
+                out.println();
+                out.flush();
             }
         } catch (FileNotFoundException e) {
             System.out.println("Cannot open specified file");
             e.printStackTrace();
+        } catch (IOException e) {
+            System.out.println("Cannot read or write index file");
+            e.printStackTrace();
         }
     }
 }
@@ -0,0 +1,130 @@
+package strings.suffix_arrays;
+/******************************************************************************
+ *  Compilation:  javac LongestCommonSubstring.java
+ *  Execution:    java LongestCommonSubstring file1.txt file2.txt ...
+ *  Dependencies: GeneralizedSuffixArray.java SuffixArray.java
+ *
+ *  Reads texts from the files named on the command line, replaces all
+ *  consecutive blocks of whitespace with a single space, and then computes
+ *  the longest substring common to all of them using a suffix array.
+ *
+ *  % java LongestCommonSubstring tinyTale.txt ../tries/shellsST.txt
+ *  ' the sea'
+ *
+ ******************************************************************************/
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Scanner;
+
+/**
+ *  The {@code LongestCommonSubstring} class provides a {@link GeneralizedSuffixArray}
+ *  client for computing the longest substring common to all of a collection
+ *  of texts, or to at least k of them.
+ *
+ *  This implementation slides a window over the suffix array of the
+ *  concatenated texts, keeping the number of distinct texts the suffixes in
+ *  the window come from, and the minimum of the LCP array over the window in
+ *  a monotone queue. It takes time linear in the total length of the texts.
+ */
+public class LongestCommonSubstring {
+
+    // Do not instantiate.
+    private LongestCommonSubstring() { }
+
+    /**
+     * Returns the longest substring common to all of the given texts.
+     *
+     * @param  texts the texts
+     * @return the longest common substring; the empty string if no such string
+     * @throws IllegalArgumentException if no texts are given
+     */
+    public static String lcs(String... texts) {
+        return lcs(texts.length, texts);
+    }
+
+    /**
+     * Returns the longest substring that occurs in at least k of the given texts.
+     *
+     * @param  k the number of texts the substring must occur in
+     * @param  texts the texts
+     * @return the longest substring common to k texts; the empty string if no such string
+     * @throws IllegalArgumentException unless {@code 1 <= k <= texts.length}
+     */
+    public static String lcs(int k, String... texts) {
+        if (k < 1 || k > texts.length) {
+            throw new IllegalArgumentException("k must be between 1 and the number of texts");
+        }
+        if (k == 1) {
+            String longest = "";
+            for (String text : texts) {
+                if (text.length() > longest.length()) {
+                    longest = text;
+                }
+            }
+            return longest;
+        }
+        GeneralizedSuffixArray gsa = new GeneralizedSuffixArray(texts);
+        SuffixArray sa = gsa.suffixArray();
+        int n = sa.length();
+        int[] count = new int[texts.length]; // suffixes in the window from each text
+        int distinct = 0; // texts with at least one suffix in the window
+        int[] queue = new int[n]; // orders j in (lo, hi] with increasing lcp(j)
+        int head = 0;
+        int tail = 0;
+        int bestLength = 0;
+        int bestOffset = 0;
+        int lo = 0;
+        for (int hi = 0; hi < n; hi++) {
+            if (count[gsa.document(sa.index(hi))]++ == 0) {
+                distinct++;
+            }
+            if (hi > lo) {
+                while (tail > head && sa.lcp(queue[tail-1]) >= sa.lcp(hi)) {
+                    tail--;
+                }
+                queue[tail++] = hi;
+            }
+            while (distinct >= k) {
+                // suffixes lo..hi come from k texts and share lcp(queue[head]) characters
+                int length = sa.lcp(queue[head]);
+                if (length > bestLength) {
+                    bestLength = length;
+                    bestOffset = sa.index(hi);
+                }
+                if (--count[gsa.document(sa.index(lo))] == 0) {
+                    distinct--;
+                }
+                lo++;
+                if (head < tail && queue[head] <= lo) {
+                    head++;
+                }
+            }
+        }
+        return sa.text().subSequence(bestOffset, bestOffset + bestLength).toString();
+    }
+
+    /**
+     * Unit tests the {@code lcs()} method.
+     *
+     * @param argv the command-line arguments
+     */
+    public static void main(String[] argv) {
+        try {
+            String[] texts = new String[argv.length];
+            for (int k = 0; k < argv.length; k++) {
+                Scanner fileReader = new Scanner(new File(argv[k]));
+                StringBuilder stringBuilder = new StringBuilder();
+                while (fileReader.hasNextLine()) {
+                    stringBuilder.append(fileReader.nextLine() + " ");
+                }
+                fileReader.close();
+                texts[k] = stringBuilder.toString().replaceAll("\\s+", " ");
+            }
+            System.out.println("'" + lcs(texts) + "'");
+        } catch (FileNotFoundException e) {
+            System.out.println("Cannot open specified file");
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package strings.suffix_arrays;
 /******************************************************************************
  *  Compilation:  javac LongestRepeatedSubstring.java
- *  Execution:    java LongestRepeatedSubstring < file.txt
+ *  Execution:    java LongestRepeatedSubstring [k minLength minCount] < file.txt
  *  Dependencies: SuffixArray.java
  *
  *  Reads a text string from stdin, replaces all consecutive blocks of
@@ -10,8 +10,18 @@ package strings.suffix_arrays;
  *
  *  % java LongestRepeatedSubstring < tinyTale.txt
  *  'st of times it was the '
+ *
+ *  % java LongestRepeatedSubstring 3 5 4 < tinyTale.txt
+ *  4 's it was the '
+ *  9 ' it was the '
+ *  10 'it was the '
  ******************************************************************************/
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Scanner;
 
 /**
@@ -19,8 +29,73 @@ import java.util.Scanner;
  *  client for computing the longest repeated substring of a string that
  *  appears at least twice. The repeated substrings may overlap (but must
  *  be distinct).
+ *
+ *  This implementation precomputes the LCP array of the suffix array, so
+ *  it takes time linear in the length of the text after the suffix array
+ *  is built.
+ *
+ *  It also computes the k longest repeated substrings that have a minimum
+ *  length and a minimum number of occurrences, in a single pass over the
+ *  LCP array with a bounded heap. Each repeat is reported as a {@link Repeat}
+ *  holding offsets into the suffix array rather than a copy of the substring.
  */
 public class LongestRepeatedSubstring {
+    // shorter repeats first, and among repeats of equal length the less frequent first
+    private static final Comparator<Repeat> WEAKEST_FIRST =
+        Comparator.comparingInt(Repeat::length).thenComparingInt(Repeat::count);
+
+    /**
+     *  A repeated substring: the common prefix of the length() characters of
+     *  the suffixes of order first() through first() + count() - 1.
+     *  Repeats are right-maximal: extending one by a character loses at least
+     *  one occurrence.
+     */
+    public static class Repeat {
+        private final int first; // order of the first suffix that starts with the repeat
+        private final int count; // number of occurrences
+        private final int length; // length of the repeat
+        private final int offset; // offset of one occurrence in the text
+
+        private Repeat(int first, int count, int length, int offset) {
+            this.first = first;
+            this.count = count;
+            this.length = length;
+            this.offset = offset;
+        }
+
+        /**
+         * order in the suffix array of the first suffix that starts with this repeat
+         * @return order of the first occurrence in the suffix array
+         */
+        public int first() {
+            return first;
+        }
+
+        /**
+         * number of occurrences of this repeat
+         * @return number of occurrences
+         */
+        public int count() {
+            return count;
+        }
+
+        /**
+         * length of this repeat
+         * @return length of this repeat
+         */
+        public int length() {
+            return length;
+        }
+
+        /**
+         * offset in the text of one occurrence of this repeat
+         * @return offset of an occurrence
+         */
+        public int offset() {
+            return offset;
+        }
+    }
+
     /**
      * Returns the longest repeated substring of the specified string.
      *
@@ -29,20 +104,84 @@ public class LongestRepeatedSubstring {
      *         the empty string if no such string
      */
     public static String lrs(String text) {
-        SuffixArray sa = new SuffixArray(text);
-        String lrs = "";
+        SuffixArray sa = new SuffixArray(text, true);
+        int from = 0;
+        int length = 0;
         int n = text.length();
         for (int i = 1; i < n; i++) {
-            int length = sa.lcp(i);
-            if (length > lrs.length()) {
-                lrs = text.substring(sa.index(i), sa.index(i) + length);
+            if (sa.lcp(i) > length) {
+                length = sa.lcp(i);
+                from = sa.index(i);
+            }
+        }
+        return text.substring(from, from + length);
+    }
+
+    /**
+     * Returns the k longest repeated substrings of the string of the given
+     * suffix array that are at least minLength characters long and occur at
+     * least minCount times, longest first (ties broken by more occurrences).
+     * Each interval of suffixes sharing a common prefix is visited once, with
+     * a stack, and only repeats that beat the weakest of the current k are
+     * allocated. The suffix array should have its LCP array precomputed.
+     *
+     * @param  sa the suffix array
+     * @param  k the maximum number of repeats to return
+     * @param  minLength the minimum length of a repeat
+     * @param  minCount the minimum number of occurrences of a repeat
+     * @return the repeats, longest first
+     * @throws IllegalArgumentException if {@code k < 0}
+     */
+    public static List<Repeat> topRepeats(SuffixArray sa, int k, int minLength, int minCount) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must be non-negative");
+        }
+        minLength = Math.max(minLength, 1);
+        minCount = Math.max(minCount, 2);
+        PriorityQueue<Repeat> heap = new PriorityQueue<>(WEAKEST_FIRST);
+        int n = sa.length();
+        int[] lcps = new int[16]; // stack of open intervals: common prefix length
+        int[] lefts = new int[16]; // and order of their first suffix
+        int top = 0;
+        lcps[0] = 0;
+        lefts[0] = 0;
+        for (int i = 1; i <= n; i++) {
+            int h = i < n ? sa.lcp(i) : 0;
+            int left = i - 1;
+            while (lcps[top] > h) {
+                // interval [lefts[top], i) closes; its suffixes share lcps[top] characters
+                int length = lcps[top];
+                left = lefts[top];
+                top--;
+                int count = i - left;
+                if (length >= minLength && count >= minCount && k > 0) {
+                    Repeat weakest = heap.peek();
+                    if (heap.size() < k) {
+                        heap.add(new Repeat(left, count, length, sa.index(left)));
+                    } else if (length > weakest.length || (length == weakest.length && count > weakest.count)) {
+                        heap.poll();
+                        heap.add(new Repeat(left, count, length, sa.index(left)));
+                    }
+                }
+            }
+            if (lcps[top] < h) {
+                if (++top == lcps.length) {
+                    lcps = Arrays.copyOf(lcps, 2 * top);
+                    lefts = Arrays.copyOf(lefts, 2 * top);
+                }
+                lcps[top] = h;
+                lefts[top] = left;
             }
         }
-        return lrs;
+        List<Repeat> repeats = new ArrayList<>(heap);
+        repeats.sort(WEAKEST_FIRST.reversed());
+        return repeats;
     }
 
     /**
-     * Unit tests the {@code lrs()} method.
+     * Unit tests the {@code lrs()} method, or the {@code topRepeats()} method
+     * if k, the minimum length and the minimum count are given as
+     * command-line arguments.
      *
      * @param args the command-line arguments
      */
@@ -53,6 +192,17 @@ public class LongestRepeatedSubstring {
             sb.append(sc.nextLine() + " ");
         }
         String s = sb.toString().replaceAll("\\s+", " ");
-        System.out.println("'" + lrs(s) + "'");
+        if (args.length < 3) {
+            System.out.println("'" + lrs(s) + "'");
+            return;
+        }
+        SuffixArray sa = new SuffixArray(s, true);
+        int k = Integer.parseInt(args[0]);
+        int minLength = Integer.parseInt(args[1]);
+        int minCount = Integer.parseInt(args[2]);
+        for (Repeat repeat : topRepeats(sa, k, minLength, minCount)) {
+            String substring = s.substring(repeat.offset(), repeat.offset() + repeat.length());
+            System.out.println(repeat.count() + " '" + substring + "'");
+        }
     }
 }
@@ -0,0 +1,139 @@
+package strings.suffix_arrays;
+/******************************************************************************
+ *  Compilation:  javac NormalizedText.java
+ *
+ *  Reads a text file into a char buffer, replacing all consecutive blocks
+ *  of whitespace with a single space, in one streaming pass.
+ *
+ ******************************************************************************/
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ *  The {@code NormalizedText} class reads a text file the way the suffix array
+ *  clients used to, by appending every line followed by a space and then
+ *  replacing each block of whitespace with a single space, but without the
+ *  intermediate strings. The file is decoded from a {@link FileChannel}
+ *  through a small fixed buffer, and every character is normalized as it is
+ *  decoded into a char array sized from the file length up front, which is
+ *  then returned as a {@link CharBuffer} that a {@link SuffixArray} is built
+ *  from directly.
+ */
+public final class NormalizedText {
+    private static final int CHUNK = 1 << 16; // bytes decoded at a time
+
+    private NormalizedText() {
+        // Do not instantiate.
+    }
+
+    /**
+     * Reads the given file in the platform's default charset.
+     * @param file the file
+     * @return the normalized text, from position 0 to the limit
+     * @throws IOException if the file cannot be read or decoded
+     */
+    public static CharBuffer read(File file) throws IOException {
+        return read(file, Charset.defaultCharset());
+    }
+
+    /**
+     * Reads the given file in the given charset.
+     * @param file the file
+     * @param charset the charset of the file
+     * @return the normalized text, from position 0 to the limit
+     * @throws IOException if the file cannot be read or decoded
+     */
+    public static CharBuffer read(File file, Charset charset) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            // every common charset decodes to at most one char per byte, plus the final space
+            Normalizer normalizer = new Normalizer((int) Math.min(Integer.MAX_VALUE - 8, channel.size() + 1));
+            ByteBuffer in = ByteBuffer.allocateDirect(CHUNK);
+            CharBuffer out = CharBuffer.allocate(CHUNK);
+            while (true) {
+                boolean eof = channel.read(in) < 0;
+                in.flip();
+                CoderResult result = decoder.decode(in, out, eof);
+                in.compact();
+                normalizer.drain(out);
+                if (eof && !result.isOverflow()) {
+                    break;
+                }
+            }
+            while (decoder.flush(out).isOverflow()) {
+                normalizer.drain(out);
+            }
+            normalizer.drain(out);
+            return normalizer.finish();
+        }
+    }
+
+    // appends decoded chars to a growing array, collapsing whitespace on the way
+    private static final class Normalizer {
+        private char[] text;
+        private int length;
+        private boolean space; // whether the last char appended is a space
+
+        Normalizer(int capacity) {
+            text = new char[capacity];
+        }
+
+        // normalizes and appends the chars in out, then clears it
+        void drain(CharBuffer out) {
+            out.flip();
+            while (out.hasRemaining()) {
+                char c = out.get();
+                if (isWhitespace(c)) {
+                    if (space) {
+                        continue;
+                    }
+                    c = ' ';
+                    space = true;
+                } else {
+                    space = false;
+                }
+                append(c);
+            }
+            out.clear();
+        }
+
+        CharBuffer finish() {
+            // every line, including the last, was followed by a space
+            if (length > 0 && !space) {
+                append(' ');
+            }
+            return CharBuffer.wrap(text, 0, length);
+        }
+
+        private void append(char c) {
+            if (length == text.length) {
+                text = Arrays.copyOf(text, Math.max(16, 2 * length));
+            }
+            text[length++] = c;
+        }
+    }
+
+    // the characters matched by \s, plus the line separators Scanner.nextLine() splits on
+    private static boolean isWhitespace(char c) {
+        switch (c) {
+            case ' ': case '\t': case '\n': case '\u000B': case '\f': case '\r':
+            case '\u0085': case '\u2028': case '\u2029':
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package strings.suffix_arrays;
+/******************************************************************************
+ *  Compilation:  javac RangeMinimumQuery.java
+ *
+ *  Constant-time range minimum queries over a static int array, using
+ *  either a sparse table or a block decomposition with in-block bit masks.
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code RangeMinimumQuery} class answers queries for the minimum
+ *  of a[lo..hi] over a fixed array a in constant time.
+ *
+ *  Two implementations are provided. The sparse table stores the minimum of
+ *  every range whose length is a power of two, taking extra space
+ *  proportional to n log n. The block implementation splits the array into
+ *  blocks of 32 entries, keeps a sparse table over the block minima and,
+ *  for every position, a 32-bit mask of the stack of prefix minima within its
+ *  block, so that it takes extra space proportional to n.
+ *  Use {@link #build(int[], long)} to choose between them by memory budget.
+ */
+abstract class RangeMinimumQuery {
+
+    /**
+     * minimum of a[lo..hi]
+     * @param lo the left end of the range, inclusive
+     * @param hi the right end of the range, inclusive
+     * @return minimum of a[lo..hi]
+     */
+    abstract int min(int lo, int hi);
+
+    /**
+     * Builds the fastest range minimum index over a whose extra memory
+     * fits into the given budget.
+     * @param a the array
+     * @param memoryBudget the maximum number of bytes the index may take
+     * @return the index, or {@code null} if neither implementation fits
+     */
+    static RangeMinimumQuery build(int[] a, long memoryBudget) {
+        if (SparseTable.bytes(a.length) <= memoryBudget) {
+            return new SparseTable(a);
+        }
+        if (BlockTable.bytes(a.length) <= memoryBudget) {
+            return new BlockTable(a);
+        }
+        return null;
+    }
+
+    // floor(log2(x)) for x >= 1
+    private static int log2(int x) {
+        return 31 - Integer.numberOfLeadingZeros(x);
+    }
+
+    private static final class SparseTable extends RangeMinimumQuery {
+        private final int[][] table; // table[k][i] = min of a[i..i+2^k-1]; table[0] is a
+
+        SparseTable(int[] a) {
+            int n = a.length;
+            int levels = n == 0 ? 1 : log2(n) + 1;
+            table = new int[levels][];
+            table[0] = a;
+            for (int k = 1; k < levels; k++) {
+                int half = 1 << (k - 1);
+                int[] prev = table[k-1];
+                int[] cur = new int[n - (1 << k) + 1];
+                for (int i = 0; i < cur.length; i++) {
+                    cur[i] = Math.min(prev[i], prev[i + half]);
+                }
+                table[k] = cur;
+            }
+        }
+
+        static long bytes(int n) {
+            long total = 0;
+            for (int k = 1; (1 << k) <= n && k < 31; k++) {
+                total += 4L * (n - (1 << k) + 1);
+            }
+            return total;
+        }
+
+        @Override
+        int min(int lo, int hi) {
+            int k = log2(hi - lo + 1);
+            return Math.min(table[k][lo], table[k][hi - (1 << k) + 1]);
+        }
+    }
+
+    private static final class BlockTable extends RangeMinimumQuery {
+        private static final int B = 32; // block size, one bit per entry in a mask
+
+        private final int[] a;
+        private final int[] mask; // mask[i] = positions of the prefix-minima stack of a[block start..i]
+        private final SparseTable blocks; // over the minimum of each block
+
+        BlockTable(int[] a) {
+            this.a = a;
+            int n = a.length;
+            mask = new int[n];
+            int[] blockMin = new int[(n + B - 1) / B];
+            for (int b = 0; b < blockMin.length; b++) {
+                int start = b * B;
+                int end = Math.min(start + B, n);
+                int cur = 0;
+                for (int i = start; i < end; i++) {
+                    while (cur != 0 && a[start + log2(cur)] > a[i]) {
+                        cur ^= Integer.highestOneBit(cur);
+                    }
+                    cur |= 1 << (i - start);
+                    mask[i] = cur;
+                }
+                blockMin[b] = a[start + Integer.numberOfTrailingZeros(mask[end-1])];
+            }
+            blocks = new SparseTable(blockMin);
+        }
+
+        static long bytes(int n) {
+            int nb = (n + B - 1) / B;
+            return 4L * n + 4L * nb + SparseTable.bytes(nb);
+        }
+
+        // minimum of a[lo..hi] where both lie in the same block
+        private int inBlock(int lo, int hi) {
+            int start = lo - lo % B;
+            int m = mask[hi] & (-1 << (lo - start));
+            return a[start + Integer.numberOfTrailingZeros(m)];
+        }
+
+        @Override
+        int min(int lo, int hi) {
+            int bl = lo / B;
+            int bh = hi / B;
+            if (bl == bh) {
+                return inBlock(lo, hi);
+            }
+            int min = Math.min(inBlock(lo, bl * B + B - 1), inBlock(bh * B, hi));
+            if (bl + 1 < bh) {
+                min = Math.min(min, blocks.min(bl + 1, bh - 1));
+            }
+            return min;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package strings.suffix_arrays;
+/******************************************************************************
+ *  Compilation:  javac SAIS.java
+ *
+ *  Linear-time suffix array construction by induced sorting (SA-IS) of
+ *  Nong, Zhang and Chan.
+ *
+ ******************************************************************************/
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ *  The {@code SAIS} class computes the suffix array of an integer string
+ *  whose symbols lie between 0 and {@code upper}, using the SA-IS algorithm.
+ *  No sentinel is required: a suffix that is a proper prefix of another
+ *  suffix is considered smaller, which agrees with {@link String#compareTo}.
+ *
+ *  This implementation takes time and extra space proportional to
+ *  n + {@code upper} (plus the recursion on the reduced string, which
+ *  is at most half as long). The string may also be given as a function
+ *  from offset to symbol, so that it is read in place, say from the
+ *  characters of a text, rather than copied into an {@code int} array.
+ */
+final class SAIS {
+    private SAIS() {
+        // Do not instantiate.
+    }
+
+    /**
+     * Returns the suffix array of {@code s}.
+     * @param s the integer string
+     * @param upper the largest symbol value that may occur in {@code s}
+     * @return the start offsets of the suffixes of {@code s} in sorted order
+     */
+    static int[] build(int[] s, int upper) {
+        return build(i -> s[i], s.length, upper);
+    }
+
+    /**
+     * Returns the suffix array of the string of the n symbols
+     * {@code s.applyAsInt(0)} through {@code s.applyAsInt(n-1)}.
+     * @param s the symbol at each offset
+     * @param n the length of the string
+     * @param upper the largest symbol value that may occur in the string
+     * @return the start offsets of the suffixes in sorted order
+     */
+    static int[] build(IntUnaryOperator s, int n, int upper) {
+        if (n == 0) {
+            return new int[0];
+        }
+        if (n == 1) {
+            return new int[] { 0 };
+        }
+        if (n == 2) {
+            return s.applyAsInt(0) < s.applyAsInt(1) ? new int[] { 0, 1 } : new int[] { 1, 0 };
+        }
+
+        // classify suffixes: ls[i] is true iff suffix i is S-type
+        boolean[] ls = new boolean[n];
+        for (int i = n - 2; i >= 0; i--) {
+            int c = s.applyAsInt(i);
+            int next = s.applyAsInt(i+1);
+            ls[i] = (c == next) ? ls[i+1] : (c < next);
+        }
+
+        // sumL[c] is the start of bucket c, sumS[c] the start of its S-type part
+        int[] sumL = new int[upper + 1];
+        int[] sumS = new int[upper + 1];
+        for (int i = 0; i < n; i++) {
+            if (!ls[i]) {
+                sumS[s.applyAsInt(i)]++;
+            } else {
+                sumL[s.applyAsInt(i) + 1]++; // an S-type symbol is never upper
+            }
+        }
+        for (int c = 0; c <= upper; c++) {
+            sumS[c] += sumL[c];
+            if (c < upper) {
+                sumL[c + 1] += sumS[c];
+            }
+        }
+
+        // collect LMS positions in text order
+        int[] lmsMap = new int[n + 1];
+        Arrays.fill(lmsMap, -1);
+        int m = 0;
+        for (int i = 1; i < n; i++) {
+            if (!ls[i-1] && ls[i]) {
+                lmsMap[i] = m++;
+            }
+        }
+        int[] lms = new int[m];
+        for (int i = 1, j = 0; i < n; i++) {
+            if (!ls[i-1] && ls[i]) {
+                lms[j++] = i;
+            }
+        }
+
+        int[] sa = new int[n];
+        induce(s, sa, ls, lms, sumL, sumS);
+
+        if (m > 0) {
+            // name the sorted LMS substrings
+            int[] sortedLms = new int[m];
+            int j = 0;
+            for (int v : sa) {
+                if (lmsMap[v] != -1) {
+                    sortedLms[j++] = v;
+                }
+            }
+            int[] reduced = new int[m];
+            int name = 0;
+            reduced[lmsMap[sortedLms[0]]] = 0;
+            for (int i = 1; i < m; i++) {
+                int l = sortedLms[i-1];
+                int r = sortedLms[i];
+                int endL = (lmsMap[l] + 1 < m) ? lms[lmsMap[l] + 1] : n;
+                int endR = (lmsMap[r] + 1 < m) ? lms[lmsMap[r] + 1] : n;
+                boolean same = true;
+                if (endL - l != endR - r) {
+                    same = false;
+                } else {
+                    while (l < endL && s.applyAsInt(l) == s.applyAsInt(r)) {
+                        l++;
+                        r++;
+                    }
+                    if (l == n || s.applyAsInt(l) != s.applyAsInt(r)) {
+                        same = false;
+                    }
+                }
+                if (!same) {
+                    name++;
+                }
+                reduced[lmsMap[sortedLms[i]]] = name;
+            }
+
+            // sort the LMS suffixes recursively and induce the final order
+            int[] reducedSa = build(reduced, name);
+            for (int i = 0; i < m; i++) {
+                sortedLms[i] = lms[reducedSa[i]];
+            }
+            induce(s, sa, ls, sortedLms, sumL, sumS);
+        }
+        return sa;
+    }
+
+    // induce the order of all suffixes from the given order of LMS suffixes
+    private static void induce(IntUnaryOperator s, int[] sa, boolean[] ls, int[] lms, int[] sumL, int[] sumS) {
+        int n = sa.length;
+        Arrays.fill(sa, -1);
+        int[] buf = Arrays.copyOf(sumS, sumS.length);
+        for (int d : lms) {
+            if (d != n) {
+                sa[buf[s.applyAsInt(d)]++] = d;
+            }
+        }
+        System.arraycopy(sumL, 0, buf, 0, sumL.length);
+        sa[buf[s.applyAsInt(n-1)]++] = n - 1;
+        for (int i = 0; i < n; i++) {
+            int v = sa[i];
+            if (v >= 1 && !ls[v-1]) {
+                sa[buf[s.applyAsInt(v-1)]++] = v - 1;
+            }
+        }
+        System.arraycopy(sumL, 0, buf, 0, sumL.length);
+        for (int i = n - 1; i >= 0; i--) {
+            int v = sa[i];
+            if (v >= 1 && ls[v-1]) {
+                sa[--buf[s.applyAsInt(v-1) + 1]] = v - 1;
+            }
+        }
+    }
+}
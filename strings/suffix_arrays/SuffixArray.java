@@ -3,7 +3,8 @@ package strings.suffix_arrays;
  *  Compilation:  javac SuffixArray.java
  *  Execution:    java SuffixArray < input.txt
  *
- *  A data type that computes the suffix array of a string.
+ *  A data type that computes the suffix array of a string, or of
+ *  binary data given as bytes.
  *
  *   % java SuffixArray < abra.txt
  *    i ind lcp rnk  select
@@ -22,8 +23,16 @@ package strings.suffix_arrays;
  *   11   2   2  11  "RACADABRA!"
  ******************************************************************************/
 
-import java.util.Arrays;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Scanner;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
 
 /**
  *  The {@code SuffixArray} class represents a suffix array of a string of
@@ -32,30 +41,363 @@ import java.util.Scanner;
  *  getting the index of the ith smallest suffix,
  *  computing the length of the longest common prefix between the
  *  i th smallest suffix and the i-1 th smallest suffix,
- *  and determining the rank of a query string (which is the number
- *  of suffixes strictly less than the query string).
+ *  determining the rank of a query string (which is the number
+ *  of suffixes strictly less than the query string),
+ *  finding the range of suffixes that start with a query string,
+ *  and enumerating the offsets of all occurrences of a query string.
  *
- *  This implementation uses a nested class {@code Suffix} to represent
- *  a suffix of a string (using constant time and space) and
- *  {@code Arrays.sort()} to sort the array of suffixes.
+ *  This implementation stores only the text and an {@code int} array of
+ *  suffix start offsets into it, which is computed in linear time
+ *  by induced sorting (see {@link SAIS}), or, for long strings when enough
+ *  processors are available, on several threads by prefix doubling
+ *  (see {@link PrefixDoubling}).
  *  The index and length operations takes constant time
  *  in the worst case. The lcp operation takes time proportional to the
- *  length of the longest common prefix.
+ *  length of the longest common prefix, unless the LCP array was requested
+ *  at construction: it is then computed in linear time by Kasai's algorithm
+ *  and lcp(i) takes constant time. When a memory budget for range minimum
+ *  queries is given as well, lcp(i, j) takes constant time too, using a
+ *  {@link RangeMinimumQuery} index over the LCP array.
+ *  The rank and range operations use the Manber-Myers binary search, which
+ *  never re-examines the characters the query shares with both ends of the
+ *  search interval. With the range minimum index they take time proportional
+ *  to m + log n, where m is the length of the query string; otherwise
+ *  m log n in the worst case.
  *  The select operation takes time proportional
  *  to the length of the suffix and should be used primarily for debugging.
+ *
+ *  A suffix array can also be built over bytes, from a {@code byte[]} or a
+ *  {@link ByteBuffer} (which may be a memory-mapped file); each byte is then
+ *  a character between 0 and 255 and the data is read in place, without
+ *  being decoded or copied, also while the suffix array is built: besides
+ *  the data, construction needs the 4n bytes of the suffix array and the
+ *  working space of SA-IS, but no {@code int} copy of the input.
+ *  Queries over such data are given as bytes too.
+ *
+ *  The suffix array and LCP array can be saved to an index file of
+ *  little-endian ints and later loaded with {@link #load(CharSequence, File)},
+ *  which maps the file read-only, in segments of 1 GB, instead of rebuilding
+ *  or copying the arrays, so queries run directly against the mapped file.
  */
 
 public class SuffixArray {
+    private static final int MAGIC = 0x53554658; // index file header: "SUFX"
+    private static final int HEADER_BYTES = 24; // magic, version, n, flags, fingerprint of the text
+    private static final int VERSION = 2;
+    private static final int SEGMENT_BITS = 28; // arrays are held in segments of 2^28 ints (1 GB)
+    private static final int SEGMENT_MASK = (1 << SEGMENT_BITS) - 1;
+    private static final int FINGERPRINT_SAMPLES = 4096; // characters of the text hashed into the header
+    private static final int HAS_LCP = 1; // flag: the LCP array follows the suffix array
+    private static final int PARALLEL_MIN_THREADS = 8; // fewer threads than this cannot beat SA-IS
+    private static final int PARALLEL_MIN_LENGTH = 1 << 20; // shorter strings are always built by SA-IS
+
+    private final CharSequence text; // a String, or a ByteSequence over binary data
     private final int n;
-    private final String[] suffixes;
+    private final IntBuffer[] index; // index[i] = start offset of the i th smallest suffix, in segments
+    private final IntBuffer[] lcp; // lcp[i] = lcp(i), in segments, or null if not precomputed
+    private final RangeMinimumQuery rmq; // minima over lcp[], or null
 
-    public SuffixArray(String s) {
+    /**
+     * Initializes a suffix array for the given string. The string may be any
+     * {@code CharSequence}, such as a {@code CharBuffer} filled by
+     * {@link NormalizedText}, as long as it does not change afterwards.
+     * @param s the input string
+     */
+    public SuffixArray(CharSequence s) {
+        this(s, false, 0, 1);
+    }
+
+    /**
+     * Initializes a suffix array for the given string, optionally
+     * precomputing the LCP array of adjacent suffixes.
+     * @param s the input string
+     * @param computeLcp whether to precompute the LCP array
+     */
+    public SuffixArray(CharSequence s, boolean computeLcp) {
+        this(s, computeLcp, 0, 1);
+    }
+
+    /**
+     * Initializes a suffix array for the given string together with its
+     * LCP array and a range minimum index over it, so that lcp(i, j)
+     * takes constant time. A sparse table (about 4 n log n bytes) is used
+     * if it fits into the budget, otherwise a block decomposition
+     * (about 4 n bytes); if neither fits, lcp(i, j) compares characters.
+     * @param s the input string
+     * @param rmqMemoryBudget the maximum number of bytes for the range minimum index
+     */
+    public SuffixArray(CharSequence s, long rmqMemoryBudget) {
+        this(s, true, rmqMemoryBudget, 1);
+    }
+
+    /**
+     * Initializes a suffix array for the given string, building it with up to
+     * the given number of threads. The result is identical for every parallelism
+     * level; only the construction of the suffix array itself is parallel.
+     * <p>
+     * Prefix doubling does more work than the sequential SA-IS build: from 1.3
+     * times as much on English text to over 10 times as much on highly
+     * repetitive text, where it needs many rounds. So it is used only when
+     * the string has at least 2^20 characters and at least 8 processors are
+     * available to it (the smaller of {@code parallelism} and the number of
+     * processors of the machine), and it is abandoned for SA-IS if the
+     * suffixes are not sorted after half as many doubling rounds as threads.
+     * As each round costs about half a sequential SA-IS build divided among
+     * the threads, it is then faster on text with short repeats, and takes
+     * at most about 1.5 times as long as SA-IS otherwise; with fewer
+     * processors the parallelism level has no effect.
+     * @param s the input string
+     * @param computeLcp whether to precompute the LCP array
+     * @param rmqMemoryBudget the maximum number of bytes for the range minimum
+     *        index over the LCP array (0 for none; ignored without the LCP array)
+     * @param parallelism the number of threads to build the suffix array with
+     * @throws IllegalArgumentException if {@code parallelism < 1}
+     */
+    public SuffixArray(CharSequence s, boolean computeLcp, long rmqMemoryBudget, int parallelism) {
+        this(s, null, computeLcp, rmqMemoryBudget, parallelism);
+    }
+
+    /**
+     * Initializes a suffix array for the given bytes.
+     * @param data the input bytes
+     */
+    public SuffixArray(byte[] data) {
+        this(new ByteSequence(data), false, 0, 1);
+    }
+
+    /**
+     * Initializes a suffix array for the bytes between the position and the
+     * limit of the given buffer, which are read in place and must not change
+     * afterwards.
+     * @param data the input bytes
+     */
+    public SuffixArray(ByteBuffer data) {
+        this(new ByteSequence(data), false, 0, 1);
+    }
+
+    /**
+     * Initializes a suffix array for the bytes between the position and the
+     * limit of the given buffer, with the same options as
+     * {@link #SuffixArray(CharSequence, boolean, long, int)}.
+     * @param data the input bytes
+     * @param computeLcp whether to precompute the LCP array
+     * @param rmqMemoryBudget the maximum number of bytes for the range minimum
+     *        index over the LCP array (0 for none; ignored without the LCP array)
+     * @param parallelism the number of threads to build the suffix array with
+     * @throws IllegalArgumentException if {@code parallelism < 1}
+     */
+    public SuffixArray(ByteBuffer data, boolean computeLcp, long rmqMemoryBudget, int parallelism) {
+        this(new ByteSequence(data), computeLcp, rmqMemoryBudget, parallelism);
+    }
+
+    /**
+     * Initializes a suffix array for the given text, sorting its suffixes by
+     * the given symbols instead of its characters. Queries still compare
+     * characters, so the symbols must order the suffixes consistently with
+     * every query that is asked; the LCP array is computed over the symbols.
+     * @param s the text
+     * @param symbols the non-negative symbol of each character of the text,
+     *        or {@code null} to sort by the characters themselves
+     * @param computeLcp whether to precompute the LCP array
+     * @param rmqMemoryBudget the maximum number of bytes for the range minimum index
+     * @param parallelism the number of threads to build the suffix array with
+     */
+    SuffixArray(CharSequence s, int[] symbols, boolean computeLcp, long rmqMemoryBudget, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        text = s;
         n = s.length();
-        suffixes = new String[n];
+        IntUnaryOperator symbol;
+        if (symbols != null) {
+            symbol = i -> symbols[i];
+        } else if (s instanceof ByteSequence) {
+            symbol = ((ByteSequence) s).symbols();
+        } else {
+            symbol = s::charAt;
+        }
+        int upper = 0;
         for (int i = 0; i < n; i++) {
-            suffixes[i] = s.substring(i);
+            upper = Math.max(upper, symbol.applyAsInt(i));
+        }
+        int threads = Math.min(parallelism, Runtime.getRuntime().availableProcessors());
+        int[] sa = null;
+        if (threads >= PARALLEL_MIN_THREADS && n >= PARALLEL_MIN_LENGTH) {
+            sa = PrefixDoubling.build(symbol, n, upper, threads, threads / 2);
         }
-        Arrays.sort(suffixes);
+        if (sa == null) {
+            sa = SAIS.build(symbol, n, upper);
+        }
+        int[] lcps = computeLcp ? kasai(symbol, sa) : null;
+        index = segments(sa);
+        lcp = computeLcp ? segments(lcps) : null;
+        rmq = computeLcp && rmqMemoryBudget > 0 ? RangeMinimumQuery.build(lcps, rmqMemoryBudget) : null;
+    }
+
+    private SuffixArray(CharSequence s, IntBuffer[] index, IntBuffer[] lcp) {
+        text = s;
+        n = s.length();
+        this.index = index;
+        this.lcp = lcp;
+        rmq = null;
+    }
+
+    /**
+     * Writes the suffix array, and the LCP array if it was computed, to an
+     * index file: a 24-byte header, which holds a fingerprint of the string,
+     * followed by n little-endian ints for each array.
+     * @param file the index file
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            channel.truncate(0);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(lcp != null ? HAS_LCP : 0).putLong(fingerprint(text));
+            IntBuffer[][] arrays = lcp != null ? new IntBuffer[][] { index, lcp } : new IntBuffer[][] { index };
+            for (IntBuffer[] array : arrays) {
+                for (int i = 0; i < n; i++) {
+                    if (!buffer.hasRemaining()) {
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer);
+                        }
+                        buffer.clear();
+                    }
+                    buffer.putInt(get(array, i));
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Opens an index file written by {@link #save(File)} for the bytes between
+     * the position and the limit of the given buffer, as {@link #load(CharSequence, File)}.
+     * @param data the bytes the index was built from
+     * @param file the index file
+     * @return the suffix array backed by the mapped file
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is not an index of these bytes
+     */
+    public static SuffixArray load(ByteBuffer data, File file) throws IOException {
+        return load(new ByteSequence(data), file);
+    }
+
+    /**
+     * Opens an index file written by {@link #save(File)} for the given string.
+     * The arrays are memory-mapped read-only, in segments of 1 GB, so opening
+     * takes time independent of the length of the string. The string is
+     * checked against its length and a fingerprint of a few thousand of its
+     * characters, which catches a different string of the same length, but
+     * not every change to a single character. A loaded suffix array has no
+     * range minimum index.
+     * @param s the string the index was built from
+     * @param file the index file
+     * @return the suffix array backed by the mapped file
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is not an index of this string
+     */
+    public static SuffixArray load(CharSequence s, File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IllegalArgumentException("not a suffix array index file: " + file);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IllegalArgumentException("not a suffix array index file: " + file);
+            }
+            int n = header.getInt(8);
+            if (n != s.length()) {
+                throw new IllegalArgumentException("index file is for a string of length " + n + ", not " + s.length());
+            }
+            if (header.getLong(16) != fingerprint(s)) {
+                throw new IllegalArgumentException("index file is for a different string of length " + n);
+            }
+            boolean hasLcp = (header.getInt(12) & HAS_LCP) != 0;
+            long bytes = 4L * n;
+            if (channel.size() != HEADER_BYTES + (hasLcp ? 2 : 1) * bytes) {
+                throw new IllegalArgumentException("truncated or corrupt suffix array index file: " + file);
+            }
+            IntBuffer[] index = map(channel, HEADER_BYTES, n);
+            IntBuffer[] lcp = hasLcp ? map(channel, HEADER_BYTES + bytes, n) : null;
+            return new SuffixArray(s, index, lcp);
+        }
+    }
+
+    // the n ints at the given position of the file, mapped in segments
+    private static IntBuffer[] map(FileChannel channel, long position, int n) throws IOException {
+        IntBuffer[] segments = new IntBuffer[(int) (((long) n + SEGMENT_MASK) >>> SEGMENT_BITS)];
+        for (int k = 0; k < segments.length; k++) {
+            long length = Math.min(SEGMENT_MASK + 1L, n - ((long) k << SEGMENT_BITS));
+            segments[k] = channel.map(FileChannel.MapMode.READ_ONLY, position + 4 * ((long) k << SEGMENT_BITS), 4 * length)
+                                 .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        }
+        return segments;
+    }
+
+    // the array as segments, without copying it
+    private static IntBuffer[] segments(int[] a) {
+        IntBuffer[] segments = new IntBuffer[(int) (((long) a.length + SEGMENT_MASK) >>> SEGMENT_BITS)];
+        for (int k = 0; k < segments.length; k++) {
+            int from = k << SEGMENT_BITS;
+            segments[k] = IntBuffer.wrap(a, from, Math.min(SEGMENT_MASK + 1, a.length - from)).slice();
+        }
+        return segments;
+    }
+
+    // entry i of an array held in segments
+    private static int get(IntBuffer[] array, int i) {
+        return array[i >>> SEGMENT_BITS].get(i & SEGMENT_MASK);
+    }
+
+    // hash of the length and of up to FINGERPRINT_SAMPLES evenly spaced characters of s
+    private static long fingerprint(CharSequence s) {
+        int n = s.length();
+        int step = Math.max(1, n / FINGERPRINT_SAMPLES);
+        long h = n;
+        for (int i = 0; i < n; i += step) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h;
+    }
+
+    /**
+     * Kasai's algorithm: computes lcp(i) for every i in linear time, using
+     * the fact that lcp(rank(p+1)) >= lcp(rank(p)) - 1
+     * @param s the symbol at each offset of the string
+     * @param sa the suffix array of the string
+     * @return the LCP array, where entry 0 is 0
+     */
+    private static int[] kasai(IntUnaryOperator s, int[] sa) {
+        int n = sa.length;
+        int[] rank = new int[n];
+        for (int i = 0; i < n; i++) {
+            rank[sa[i]] = i;
+        }
+        int[] lcp = new int[n];
+        int h = 0;
+        for (int p = 0; p < n; p++) {
+            int r = rank[p];
+            if (r == 0) {
+                h = 0;
+                continue;
+            }
+            int q = sa[r-1];
+            while (p + h < n && q + h < n && s.applyAsInt(p+h) == s.applyAsInt(q+h)) {
+                h++;
+            }
+            lcp[r] = h;
+            if (h > 0) {
+                h--;
+            }
+        }
+        return lcp;
     }
 
     /**
@@ -72,7 +414,15 @@ public class SuffixArray {
      * @return index of the i th suffix in string
      */
     public int index(int i) {
-        return n - suffixes[i].length();
+        return get(index, i);
+    }
+
+    /**
+     * the string this suffix array was built from
+     * @return the string
+     */
+    CharSequence text() {
+        return text;
     }
 
     /**
@@ -81,7 +431,7 @@ public class SuffixArray {
      * @return i th sorted suffex
      */
     public String select(int i) {
-        return suffixes[i];
+        return text.subSequence(get(index, i), n).toString();
     }
 
     /**
@@ -90,20 +440,133 @@ public class SuffixArray {
      * @return number of suffixes strictly less than query
      */
     public int rank(String query) {
-        int lo = 0;
-        int hi = n - 1;
-        while (lo <= hi) {
-            int mid = (lo + hi) / 2;
-            int cmp = query.compareTo(suffixes[mid]);
-            if (cmp < 0) {
-                hi = mid - 1;
-            } else if (cmp > 0) {
-                lo = mid + 1;
+        return search(query, false);
+    }
+
+    /**
+     * number of suffixes strictly less than query, for a suffix array over bytes
+     * @param query query bytes
+     * @return number of suffixes strictly less than query
+     */
+    public int rank(byte[] query) {
+        return search(new ByteSequence(query), false);
+    }
+
+    /**
+     * range of the suffixes that start with query
+     * @param query query string
+     * @return the interval [first, last) of orders in suffixes whose suffix
+     *         starts with query, as the array {first, last}
+     */
+    public int[] range(String query) {
+        return range((CharSequence) query);
+    }
+
+    /**
+     * range of the suffixes that start with query, for a suffix array over bytes
+     * @param query query bytes
+     * @return the interval [first, last) of orders in suffixes whose suffix
+     *         starts with query, as the array {first, last}
+     */
+    public int[] range(byte[] query) {
+        return range(new ByteSequence(query));
+    }
+
+    private int[] range(CharSequence query) {
+        int first = search(query, false);
+        int last = first == n ? n : search(query, true);
+        return new int[] { first, last };
+    }
+
+    /**
+     * offsets in the string of all occurrences of query, in suffix order;
+     * the offsets are read straight from the suffix array, without allocating
+     * anything per occurrence
+     * @param query query string
+     * @return offsets of all occurrences of query
+     */
+    public IntStream occurrences(String query) {
+        int[] range = range(query);
+        return IntStream.range(range[0], range[1]).map(i -> get(index, i));
+    }
+
+    /**
+     * offsets of all occurrences of query, in suffix order, for a suffix array over bytes
+     * @param query query bytes
+     * @return offsets of all occurrences of query
+     */
+    public IntStream occurrences(byte[] query) {
+        int[] range = range(query);
+        return IntStream.range(range[0], range[1]).map(i -> get(index, i));
+    }
+
+    /**
+     * Manber-Myers binary search for the first suffix that comes after query.
+     * Suffix lo is known to come before query and suffix hi after it (-1 and n
+     * are virtual), and llo, lhi are their common prefix lengths with query.
+     * Characters within min(llo, lhi) are shared with every suffix in between
+     * and are skipped; with the range minimum index, lcp(lo, mid) or
+     * lcp(mid, hi) decides most probes without looking at the text at all.
+     * @param query query string
+     * @param prefixComesBefore whether suffixes starting with query come before it
+     * @return the order of the first suffix that comes after query
+     */
+    private int search(CharSequence query, boolean prefixComesBefore) {
+        int m = query.length();
+        int lo = -1;
+        int hi = n;
+        int llo = 0;
+        int lhi = 0;
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            int h; // length of the prefix mid is known to share with query
+            if (rmq != null && llo >= lhi && lo >= 0) {
+                int k = rmq.min(lo + 1, mid);
+                if (k > llo) {
+                    lo = mid;
+                    continue;
+                } else if (k < llo) {
+                    hi = mid;
+                    lhi = k;
+                    continue;
+                }
+                h = llo;
+            } else if (rmq != null && lhi > llo && hi < n) {
+                int k = rmq.min(mid + 1, hi);
+                if (k > lhi) {
+                    hi = mid;
+                    continue;
+                } else if (k < lhi) {
+                    lo = mid;
+                    llo = k;
+                    continue;
+                }
+                h = lhi;
+            } else {
+                h = Math.min(llo, lhi);
+            }
+            int offset = get(index, mid);
+            int limit = Math.min(m, n - offset);
+            while (h < limit && query.charAt(h) == text.charAt(offset + h)) {
+                h++;
+            }
+            boolean before;
+            if (h == m) {
+                before = prefixComesBefore;
+            } else if (h == n - offset) {
+                before = true; // suffix is a proper prefix of query
             } else {
-                return mid;
+                before = text.charAt(offset + h) < query.charAt(h);
+            }
+            if (before) {
+                lo = mid;
+                llo = h;
+            } else {
+                hi = mid;
+                lhi = h;
             }
         }
-        return lo;
+        return hi;
     }
 
     /**
@@ -122,13 +585,32 @@ public class SuffixArray {
         return n;
     }
 
+    /**
+     * length of the longest common prefix of the suffixes of text starting at offsets p and q
+     * @param p start offset of a suffix
+     * @param q start offset of a suffix
+     * @return length of the longest common prefix of the two suffixes
+     */
+    private int lcpAt(int p, int q) {
+        int m = n - Math.max(p, q);
+        for (int i = 0; i < m; i++) {
+            if (text.charAt(p + i) != text.charAt(q + i)) {
+                return i;
+            }
+        }
+        return m;
+    }
+
     /**
      * length of the longest common prefix of suffixes(i) and suffixes(i-1)
      * @param i the specified order in suffixes
      * @return length of the longest common prefix of suffixes(i) and suffixes(i-1)
      */
     public int lcp(int i) {
-        return lcp(suffixes[i], suffixes[i-1]);
+        if (lcp != null) {
+            return get(lcp, i);
+        }
+        return lcpAt(get(index, i), get(index, i-1));
     }
 
     /**
@@ -137,7 +619,13 @@ public class SuffixArray {
      * @return length of the longest common prefix of suffixes(i) and suffixes(j)
      */
     public int lcp(int i, int j) {
-        return lcp(suffixes[i], suffixes[j]);
+        if (i == j) {
+            return n - get(index, i);
+        }
+        if (rmq != null) {
+            return rmq.min(Math.min(i, j) + 1, Math.max(i, j));
+        }
+        return lcpAt(get(index, i), get(index, j));
     }
 
     public static void main(String[] argv) {
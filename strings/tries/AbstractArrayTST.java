@@ -0,0 +1,434 @@
+/******************************************************************************
+ *  Compilation:  javac AbstractArrayTST.java
+ *
+ *  The pool of parallel arrays shared by the array-backed ternary search
+ *  tries, which differ only in how they store values.
+ *
+ ******************************************************************************/
+package strings.tries;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.Queue;
+
+/**
+ *  The {@code AbstractArrayTST} class is the node pool behind {@link ArrayTST}
+ *  and {@link IntTST}, described in {@link ArrayTST}: the characters and
+ *  links of the nodes, the free list of deleted nodes, linked through
+ *  {@code left[]}, and the operations that only follow links. A subclass
+ *  keeps the value of node x in an array of its own, and tells the pool
+ *  whether a node has a value and how to clear, grow and renumber the values.
+ */
+abstract class AbstractArrayTST {
+    static final int INITIAL_CAPACITY = 16;
+
+    int n; // size
+    int root; // root of TST, 0 if empty
+    int nodes = 1; // nodes taken from the pool, including the null node 0
+    int free; // first node of the list of deleted nodes, 0 if none
+    char[] c; // c[x] = character of node x
+    int[] left, mid, right; // left, middle, and right subtries of node x
+
+    /**
+     * Initializes an empty pool with room for the given number of nodes,
+     * besides the null node; the subclass allocates its values to match.
+     * @param capacity the initial number of nodes
+     * @throws IllegalArgumentException if {@code capacity < 0}
+     */
+    AbstractArrayTST(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must be non-negative");
+        }
+        capacity++; // the null node
+        c = new char[capacity];
+        left = new int[capacity];
+        mid = new int[capacity];
+        right = new int[capacity];
+    }
+
+    // does node x hold the value of a key?
+    abstract boolean hasValue(int x);
+
+    // removes the value of node x
+    abstract void clearValue(int x);
+
+    // grows the values to the given capacity, the new nodes without values
+    abstract void resizeValues(int capacity);
+
+    // replaces the values by those of order[1..capacity-1], node 0 without a value
+    abstract void renumberValues(int[] order, int capacity);
+
+    /**
+     * Returns the number of key-value pairs in this symbol table.
+     * @return the number of key-value pairs in this symbol table
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Is this symbol table empty?
+     * @return {@code true} if this symbol table is empty and {@code false} otherwise
+     */
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    /**
+     * return node corresponding to the key s[from, to)
+     * @param x root of the subtrie to search
+     * @param s the string holding the key
+     * @param from offset of the first character of the key
+     * @param to offset one past the last character of the key
+     * @return node corresponding to the key, or 0 if there is none
+     */
+    int get(int x, String s, int from, int to) {
+        int d = from;
+        while (x != 0) {
+            char ch = s.charAt(d);
+            if (ch < c[x]) {
+                x = left[x];
+            } else if (ch > c[x]) {
+                x = right[x];
+            } else if (d < to - 1) {
+                x = mid[x];
+                d++;
+            } else {
+                return x;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * return node of the key s[from, to), creating the nodes on its path
+     * that are missing
+     * @param s the string holding the key
+     * @param from offset of the first character of the key
+     * @param to offset one past the last character of the key
+     * @return node corresponding to the key
+     */
+    int insert(String s, int from, int to) {
+        if (root == 0) {
+            root = newNode(s.charAt(from));
+        }
+        int x = root;
+        int d = from;
+        while (true) {
+            char ch = s.charAt(d);
+            // newNode() may replace the arrays, so it is called before the link is stored
+            if (ch < c[x]) {
+                if (left[x] == 0) {
+                    int y = newNode(ch);
+                    left[x] = y;
+                }
+                x = left[x];
+            } else if (ch > c[x]) {
+                if (right[x] == 0) {
+                    int y = newNode(ch);
+                    right[x] = y;
+                }
+                x = right[x];
+            } else if (d < to - 1) {
+                d++;
+                if (mid[x] == 0) {
+                    int y = newNode(s.charAt(d));
+                    mid[x] = y;
+                }
+                x = mid[x];
+            } else {
+                return x;
+            }
+        }
+    }
+
+    // deletes the key s[from, to), along with the nodes left without a key below them
+    void delete(String s, int from, int to) {
+        int[] path = new int[16]; // nodes on the search path, from the root
+        int length = 0;
+        int x = root;
+        int d = from;
+        while (x != 0) {
+            if (length == path.length) {
+                path = Arrays.copyOf(path, 2 * length);
+            }
+            path[length++] = x;
+            char ch = s.charAt(d);
+            if (ch < c[x]) {
+                x = left[x];
+            } else if (ch > c[x]) {
+                x = right[x];
+            } else if (d < to - 1) {
+                x = mid[x];
+                d++;
+            } else {
+                break;
+            }
+        }
+        if (x == 0 || !hasValue(x)) {
+            return;
+        }
+        clearValue(x);
+        n--;
+
+        // prune, from the bottom, the nodes with neither a value nor a middle subtrie
+        for (int i = length - 1; i >= 0 && !hasValue(path[i]) && mid[path[i]] == 0; i--) {
+            int y = path[i];
+            int replacement = remove(y);
+            if (i == 0) {
+                root = replacement;
+            } else if (left[path[i - 1]] == y) {
+                left[path[i - 1]] = replacement;
+            } else if (right[path[i - 1]] == y) {
+                right[path[i - 1]] = replacement;
+            } else {
+                mid[path[i - 1]] = replacement;
+            }
+            freeNode(y);
+        }
+    }
+
+    // removes x from the tree of left and right links it is in, as in Hibbard
+    // deletion from a binary search tree; returns the tree that replaces x
+    private int remove(int x) {
+        if (left[x] == 0) {
+            return right[x];
+        }
+        if (right[x] == 0) {
+            return left[x];
+        }
+        // the successor of x in the tree takes its place
+        int parent = x;
+        int successor = right[x];
+        while (left[successor] != 0) {
+            parent = successor;
+            successor = left[successor];
+        }
+        if (parent != x) {
+            left[parent] = right[successor];
+            right[successor] = right[x];
+        }
+        left[successor] = left[x];
+        return successor;
+    }
+
+    // puts node x on the free list
+    private void freeNode(int x) {
+        c[x] = 0;
+        mid[x] = 0;
+        right[x] = 0;
+        clearValue(x);
+        left[x] = free;
+        free = x;
+    }
+
+    // takes a node from the free list, or else the next node from the pool,
+    // growing the arrays if it is exhausted
+    private int newNode(char ch) {
+        if (free != 0) {
+            int x = free;
+            free = left[x];
+            left[x] = 0;
+            c[x] = ch;
+            return x;
+        }
+        if (nodes == c.length) {
+            int capacity = 2 * nodes;
+            c = Arrays.copyOf(c, capacity);
+            left = Arrays.copyOf(left, capacity);
+            mid = Arrays.copyOf(mid, capacity);
+            right = Arrays.copyOf(right, capacity);
+            resizeValues(capacity);
+        }
+        c[nodes] = ch;
+        return nodes++;
+    }
+
+    /**
+     * Gives back the memory of the nodes freed by deletions: renumbers the
+     * nodes in use from 1, in the order of a depth-first traversal that
+     * follows middle links first, so that the nodes of a key sit close
+     * together, and shrinks the arrays to fit them. The keys are not
+     * reinserted, so the shape of the trie is unchanged.
+     */
+    public void compact() {
+        int[] renumbered = new int[nodes]; // renumbered[x] = new number of node x, 0 if free
+        int[] order = new int[nodes]; // order[y] = old number of new node y
+        int live = 0;
+        int[] stack = new int[16];
+        int top = 0;
+        if (root != 0) {
+            stack[top++] = root;
+        }
+        while (top > 0) {
+            int x = stack[--top];
+            renumbered[x] = ++live;
+            order[live] = x;
+            if (top + 3 > stack.length) {
+                stack = Arrays.copyOf(stack, 2 * stack.length);
+            }
+            // middle subtrie on top, so it is numbered right after x
+            if (right[x] != 0) {
+                stack[top++] = right[x];
+            }
+            if (left[x] != 0) {
+                stack[top++] = left[x];
+            }
+            if (mid[x] != 0) {
+                stack[top++] = mid[x];
+            }
+        }
+        int capacity = live + 1;
+        char[] newC = new char[capacity];
+        int[] newLeft = new int[capacity];
+        int[] newMid = new int[capacity];
+        int[] newRight = new int[capacity];
+        for (int y = 1; y < capacity; y++) {
+            int x = order[y];
+            newC[y] = c[x];
+            newLeft[y] = renumbered[left[x]];
+            newMid[y] = renumbered[mid[x]];
+            newRight[y] = renumbered[right[x]];
+        }
+        renumberValues(order, capacity);
+        c = newC;
+        left = newLeft;
+        mid = newMid;
+        right = newRight;
+        root = renumbered[root];
+        nodes = capacity;
+        free = 0;
+    }
+
+    /**
+     * Returns the string in the symbol table that is the longest prefix of {@code query},
+     * or {@code null}, if no such string.
+     * @param query the query string
+     * @return the string in the symbol table that is the longest prefix of {@code query},
+     *         or {@code null} if no such string
+     * @throws IllegalArgumentException if {@code query} is {@code null}
+     */
+    public String longestPrefixOf(String query) {
+        if (query == null) {
+            throw new IllegalArgumentException("calls longestPrefixOf() with null argument");
+        }
+        if (query.length() == 0) {
+            return null;
+        }
+        return query.substring(0, longestKeyLength(query, 0));
+    }
+
+    // length of the longest key that is a prefix of query[offset..]
+    int longestKeyLength(String query, int offset) {
+        int length = 0;
+        int x = root;
+        int i = offset;
+        while (x != 0 && i < query.length()) {
+            char ch = query.charAt(i);
+            if (ch < c[x]) {
+                x = left[x];
+            } else if (ch > c[x]) {
+                x = right[x];
+            } else {
+                i++;
+                if (hasValue(x)) {
+                    length = i - offset;
+                }
+                x = mid[x];
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Returns all keys in the symbol table as an {@code Iterable}.
+     * To iterate over all of the keys in the symbol table named {@code st},
+     * use the foreach notation: {@code for (Key key : st.keys())}.
+     * @return all keys in the symbol table as an {@code Iterable}
+     */
+    public Iterable<String> keys() {
+        LinkedList<String> queue = new LinkedList<>();
+        collect(root, new StringBuilder(), queue);
+        return queue;
+    }
+
+    /**
+     * Returns all of the keys in the set that start with {@code prefix}.
+     * @param prefix the prefix
+     * @return all of the keys in the set that start with {@code prefix},
+     *         as an iterable
+     * @throws IllegalArgumentException if {@code prefix} is {@code null}
+     */
+    public Iterable<String> keysWithPrefix(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("calls keysWithPrefix() with null argument");
+        }
+        if (prefix.length() == 0) {
+            throw new IllegalArgumentException("key must have length >= 1");
+        }
+        LinkedList<String> queue = new LinkedList<>();
+        int x = get(root, prefix, 0, prefix.length());
+        if (x == 0) {
+            return queue;
+        }
+        if (hasValue(x)) {
+            queue.addLast(prefix);
+        }
+        collect(mid[x], new StringBuilder(prefix), queue);
+        return queue;
+    }
+
+    /**
+     * get all keys in subtrie rooted at x with given prefix
+     * @param x the rooted subtrie
+     * @param prefix the specified prefix
+     * @param queue keys started with given prefix in this symbol table
+     */
+    private void collect(int x, StringBuilder prefix, Queue<String> queue) {
+        if (x == 0) {
+            return;
+        }
+        collect(left[x], prefix, queue);
+        if (hasValue(x)) {
+            queue.add(prefix.toString() + c[x]);
+        }
+        collect(mid[x], prefix.append(c[x]), queue);
+        prefix.deleteCharAt(prefix.length() - 1);
+        collect(right[x], prefix, queue);
+    }
+
+    /**
+     * Returns all of the keys in the symbol table that match {@code pattern},
+     * where the character '.' is interpreted as a wildcard character.
+     * @param pattern the pattern
+     * @return all of the keys in the symbol table that match {@code pattern},
+     *         as an iterable, where . is treated as a wildcard character.
+     */
+    public Iterable<String> keysThatMatch(String pattern) {
+        LinkedList<String> queue = new LinkedList<>();
+        collect(root, new StringBuilder(), 0, pattern, queue);
+        return queue;
+    }
+
+    private void collect(int x, StringBuilder prefix, int i, String pattern, Queue<String> queue) {
+        if (x == 0) {
+            return;
+        }
+        char ch = pattern.charAt(i);
+        if (ch == '.' || ch < c[x]) {
+            collect(left[x], prefix, i, pattern, queue);
+        }
+        if (ch == '.' || ch == c[x]) {
+            if (i == pattern.length() - 1 && hasValue(x)) {
+                queue.add(prefix.toString() + c[x]);
+            }
+            if (i < pattern.length() - 1) {
+                collect(mid[x], prefix.append(c[x]), i+1, pattern, queue);
+                prefix.deleteCharAt(prefix.length() - 1);
+            }
+        }
+        if (ch == '.' || ch > c[x]) {
+            collect(right[x], prefix, i, pattern, queue);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/******************************************************************************
+ *  Compilation:  javac ArrayTST.java
+ *  Execution:    java ArrayTST < words.txt
+ *
+ *  Symbol table with string keys, implemented using a ternary search
+ *  trie (TST) whose nodes are stored in parallel arrays.
+ *
+ *  % java ArrayTST < shellsST.txt
+ *  keys(""):
+ *  by 4
+ *  sea 6
+ *  sells 1
+ *  she 0
+ *  shells 3
+ *  shore 7
+ *  the 5
+ *
+ *  longestPrefixOf("shellsort"):
+ *  shells
+ *
+ *  keysWithPrefix("shor"):
+ *  shore
+ *
+ *  keysThatMatch(".he.l."):
+ *  shells
+ *
+ *  Remarks
+ *  --------
+ *    - can't use a key that is the empty string ""
+ *
+ ******************************************************************************/
+package strings.tries;
+
+import java.util.Arrays;
+import java.util.Scanner;
+
+/**
+ *  The {@code ArrayTST} class represents an symbol table of key-value
+ *  pairs, with string keys and generic values.
+ *  It supports the same operations as {@link TST}: put, get, contains, delete,
+ *  size, is-empty, longest prefix, keys with a prefix and keys that match a pattern.
+ *  Values cannot be {@code null}—setting the value associated with a key to
+ *  {@code null} is equivalent to deleting the key from the symbol table.
+ *
+ *  This implementation uses a ternary search trie whose nodes live in a pool
+ *  of parallel arrays: node x has character {@code c[x]}, subtries
+ *  {@code left[x]}, {@code mid[x]} and {@code right[x]}, given as node
+ *  numbers, and value {@code vals[x]}. Node 0 stands for the empty subtrie.
+ *  A node takes 18 bytes plus its value, against about 40 bytes for a
+ *  {@link TST} node, and nodes created one after the other, such as the
+ *  middle links of a new key, sit next to each other in memory.
+ *  The arrays grow by doubling. Nodes removed by deletions are kept on a free
+ *  list for reuse, and {@code compact} renumbers the nodes in use to shrink
+ *  the arrays.
+ */
+public class ArrayTST<Value> extends AbstractArrayTST {
+    private Object[] vals; // vals[x] = value associated with string of node x
+
+    /**
+     * Initializes an empty string symbol table.
+     */
+    public ArrayTST() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Initializes an empty string symbol table with room for the given number
+     * of nodes (about the total length of the keys) before the arrays grow.
+     * @param capacity the initial number of nodes
+     * @throws IllegalArgumentException if {@code capacity < 0}
+     */
+    public ArrayTST(int capacity) {
+        super(capacity);
+        vals = new Object[c.length];
+    }
+
+    @Override
+    boolean hasValue(int x) {
+        return vals[x] != null;
+    }
+
+    @Override
+    void clearValue(int x) {
+        vals[x] = null;
+    }
+
+    @Override
+    void resizeValues(int capacity) {
+        vals = Arrays.copyOf(vals, capacity);
+    }
+
+    @Override
+    void renumberValues(int[] order, int capacity) {
+        Object[] newVals = new Object[capacity];
+        for (int y = 1; y < capacity; y++) {
+            newVals[y] = vals[order[y]];
+        }
+        vals = newVals;
+    }
+
+    /**
+     * Does this symbol table contain the given key?
+     * @param key the key
+     * @return {@code true} if this symbol table contains {@code key} and {@code false} otherwise
+     * @throws IllegalArgumentException if {@code key} is {@code null}
+     */
+    public boolean contains(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("argument to contains() is null");
+        }
+        return get(key) != null;
+    }
+
+    /**
+     * Returns the value associated with the given key.
+     * @param key the key
+     * @return the value associated with the given key if the key is in the symbol table
+     *         and {@code null} if the key is not in the symbol table
+     * @throws IllegalArgumentException if {@code key} is {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public Value get(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("calls get() with null argument");
+        }
+        if (key.length() == 0) {
+            throw new IllegalArgumentException("key must have length >= 1");
+        }
+        return (Value) vals[get(root, key, 0, key.length())];
+    }
+
+    /**
+     * Inserts the key-value pair into the symbol table, overwriting the old value
+     * with the new value if the key is already in the symbol table.
+     * If the value is {@code null}, this effectively deletes the key from the symbol table.
+     * @param key the key
+     * @param val the value
+     * @throws IllegalArgumentException if {@code key} is {@code null}
+     */
+    public void put(String key, Value val) {
+        if (key == null) {
+            throw new IllegalArgumentException("calls put() with null key");
+        }
+        if (key.length() == 0) {
+            throw new IllegalArgumentException("key must have length >= 1");
+        }
+        if (val == null) {
+            delete(key);
+            return;
+        }
+        int x = insert(key, 0, key.length());
+        if (vals[x] == null) {
+            n++;
+        }
+        vals[x] = val;
+    }
+
+    /**
+     * Removes the specified key and its associated value from this symbol table
+     * (if the key is in this symbol table), along with the nodes that are left
+     * without a key below them. The nodes removed are reused by later puts;
+     * {@link #compact()} gives their memory back.
+     * @param key the key
+     * @throws IllegalArgumentException if {@code key} is {@code null}
+     */
+    public void delete(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("calls delete() with null key");
+        }
+        if (key.length() == 0) {
+            throw new IllegalArgumentException("key must have length >= 1");
+        }
+        delete(key, 0, key.length());
+    }
+
+    /**
+     * Unit tests the {@code ArrayTST} data type.
+     *
+     * @param argv the command-line arguments
+     */
+    public static void main(String[] argv) {
+        // build symbol table from standard input
+        ArrayTST<Integer> st = new ArrayTST<Integer>();
+        Scanner in = new Scanner(System.in);
+        for (int i = 0; in.hasNextLine(); i++) {
+            String key = in.nextLine();
+            st.put(key, i);
+        }
+        in.close();
+
+        // print results
+        if (st.size() < 100) {
+            System.out.println("keys(\"\"):");
+            for (String key : st.keys()) {
+                System.out.println(key + " " + st.get(key));
+            }
+            System.out.println();
+        }
+
+        System.out.println("longestPrefixOf(\"shellsort\"):");
+        System.out.println(st.longestPrefixOf("shellsort"));
+        System.out.println();
+
+        System.out.println("longestPrefixOf(\"shell\"):");
+        System.out.println(st.longestPrefixOf("shell"));
+        System.out.println();
+
+        System.out.println("keysWithPrefix(\"shor\"):");
+        for (String s : st.keysWithPrefix("shor")) {
+            System.out.println(s);
+        }
+        System.out.println();
+
+        System.out.println("keysThatMatch(\".he.l.\"):");
+        for (String s : st.keysThatMatch(".he.l.")) {
+            System.out.println(s);
+        }
+    }
+}
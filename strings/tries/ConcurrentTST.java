@@ -0,0 +1,486 @@
+/******************************************************************************
+ *  Compilation:  javac ConcurrentTST.java
+ *  Execution:    java ConcurrentTST < words.txt
+ *
+ *  Thread-safe symbol table with string keys, implemented using a ternary
+ *  search trie (TST) of immutable nodes.
+ *
+ *  % java ConcurrentTST < shellsST.txt
+ *  keys(""):
+ *  by 4
+ *  sea 6
+ *  sells 1
+ *  she 0
+ *  shells 3
+ *  shore 7
+ *  the 5
+ *
+ *  longestPrefixOf("shellsort"):
+ *  shells
+ *
+ *  keysWithPrefix("shor"):
+ *  shore
+ *
+ *  keysThatMatch(".he.l."):
+ *  shells
+ *
+ *  Remarks
+ *  --------
+ *    - can't use a key that is the empty string ""
+ *
+ ******************************************************************************/
+package strings.tries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ *  The {@code ConcurrentTST} class represents a symbol table of key-value
+ *  pairs, with string keys and generic values, that may be shared between
+ *  threads without locking.
+ *  It supports the same operations as {@link TST}: put, get, contains, delete, size,
+ *  is-empty, longest prefix, keys with a prefix and keys that match a pattern.
+ *  Values cannot be {@code null}—setting the value associated with a key to
+ *  {@code null} is equivalent to deleting the key from the symbol table.
+ *
+ *  This implementation uses a ternary search trie whose nodes are never
+ *  changed once they are published. A put copies the nodes on the path to
+ *  its key, sharing the rest of the trie, and installs the new root with a
+ *  compare-and-set, retrying if another put got there first. Nodes left with
+ *  neither a value nor a middle subtrie by a delete are spliced out of the
+ *  copy, as in Hibbard deletion, so that churn does not leave dead nodes.
+ *  A read takes the root once and works on that version of the trie
+ *  throughout, so reads never block or retry and always see the trie as it
+ *  was after some put; the keys returned by one call are consistent with
+ *  each other. Puts take time and space proportional to the length of the
+ *  path, and concurrent puts contend only on the root.
+ */
+public class ConcurrentTST<Value> {
+    private static final int LEFT = 0, MID = 1, RIGHT = 2; // links on a path
+
+    private final AtomicReference<Version<Value>> current = new AtomicReference<>(new Version<Value>(null, 0));
+
+    // a trie and its size, published together
+    private static class Version<Value> {
+        private final Node<Value> root; // root of TST
+        private final int n; // size
+
+        private Version(Node<Value> root, int n) {
+            this.root = root;
+            this.n = n;
+        }
+    }
+
+    private static class Node<Value> {
+        private final char c; // character
+        private final Node<Value> left, mid, right;  // left, middle, and right subtries
+        private final Value val; // value associated with string
+
+        private Node(char c, Node<Value> left, Node<Value> mid, Node<Value> right, Value val) {
+            this.c = c;
+            this.left = left;
+            this.mid = mid;
+            this.right = right;
+            this.val = val;
+        }
+
+        // copy of this node with the given link replaced, spliced out if the
+        // copy would have neither a value nor a middle subtrie
+        private Node<Value> with(int link, Node<Value> x) {
+            Node<Value> l = link == LEFT ? x : left;
+            Node<Value> m = link == MID ? x : mid;
+            Node<Value> r = link == RIGHT ? x : right;
+            return node(c, l, m, r, val);
+        }
+    }
+
+    // a new node, or, if it would have neither a value nor a middle subtrie,
+    // the tree of its left and right subtries without it
+    private static <Value> Node<Value> node(char c, Node<Value> left, Node<Value> mid, Node<Value> right,
+                                            Value val) {
+        if (mid == null && val == null) {
+            return join(left, right);
+        }
+        return new Node<Value>(c, left, mid, right, val);
+    }
+
+    // the tree of left and right links holding the nodes of left and then of
+    // right, as in Hibbard deletion: the smallest node of right takes the
+    // place of the removed node, and the nodes above it are copied
+    private static <Value> Node<Value> join(Node<Value> left, Node<Value> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        List<Node<Value>> spine = new ArrayList<>();
+        Node<Value> successor = right;
+        while (successor.left != null) {
+            spine.add(successor);
+            successor = successor.left;
+        }
+        Node<Value> rest = successor.right;
+        for (int i = spine.size() - 1; i >= 0; i--) {
+            Node<Value> y = spine.get(i);
+            rest = new Node<Value>(y.c, rest, y.mid, y.right, y.val);
+        }
+        return new Node<Value>(successor.c, left, successor.mid, rest, successor.val);
+    }
+
+    /**
+     * Initializes an empty string symbol table.
+     */
+    public ConcurrentTST() {
+    }
+
+    /**
+     * Returns the number of key-value pairs in this symbol table.
+     * @return the number of key-value pairs in this symbol table
+     */
+    public int size() {
+        return current.get().n;
+    }
+
+    /**
+     * Is this symbol table empty?
+     * @return {@code true} if this symbol table is empty and {@code false} otherwise
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Does this symbol table contain the given key?
+     * @param key the key
+     * @return {@code true} if this symbol table contains {@code key} and {@code false} otherwise
+     * @throws IllegalArgumentException if {@code key} is {@code null}
+     */
+    public boolean contains(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("argument to contains() is null");
+        }
+        return get(key) != null;
+    }
+
+    /**
+     * Returns the value associated with the given key.
+     * @param key the key
+     * @return the value associated with the given key if the key is in the symbol table
+     *         and {@code null} if the key is not in the symbol table
+     * @throws IllegalArgumentException if {@code key} is {@code null}
+     */
+    public Value get(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("calls get() with null argument");
+        }
+        if (key.length() == 0) {
+            throw new IllegalArgumentException("key must have length >= 1");
+        }
+        Node<Value> x = get(current.get().root, key);
+        if (x == null) {
+            return null;
+        }
+        return x.val;
+    }
+
+    /**
+     * return subtrie corresponding to given key
+     * @param x root of the subtrie to search
+     * @param key search key
+     * @return subtrie corresponding to given key
+     */
+    private static <Value> Node<Value> get(Node<Value> x, String key) {
+        int d = 0;
+        while (x != null) {
+            char c = key.charAt(d);
+            if (c < x.c) {
+                x = x.left;
+            } else if (c > x.c) {
+                x = x.right;
+            } else if (d < key.length() - 1) {
+                x = x.mid;
+                d++;
+            } else {
+                return x;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Inserts the key-value pair into the symbol table, overwriting the old value
+     * with the new value if the key is already in the symbol table.
+     * If the value is {@code null}, this effectively deletes the key from the symbol table.
+     * @param key the key
+     * @param val the value
+     * @throws IllegalArgumentException if {@code key} is {@code null}
+     */
+    public void put(String key, Value val) {
+        if (key == null) {
+            throw new IllegalArgumentException("calls put() with null key");
+        }
+        if (key.length() == 0) {
+            throw new IllegalArgumentException("key must have length >= 1");
+        }
+        while (true) {
+            Version<Value> version = current.get();
+            Version<Value> updated = put(version, key, val);
+            if (updated == version || current.compareAndSet(version, updated)) {
+                return;
+            }
+        }
+    }
+
+    // the version that results from putting key-value into the given one
+    private Version<Value> put(Version<Value> version, String key, Value val) {
+        @SuppressWarnings("unchecked")
+        Node<Value>[] path = (Node<Value>[]) new Node<?>[key.length() + 8];
+        int[] links = new int[path.length];
+        int length = 0;
+        Node<Value> x = version.root;
+        int d = 0;
+        while (x != null) {
+            if (length == path.length) {
+                path = Arrays.copyOf(path, 2 * length);
+                links = Arrays.copyOf(links, 2 * length);
+            }
+            char c = key.charAt(d);
+            if (c < x.c) {
+                links[length] = LEFT;
+                path[length++] = x;
+                x = x.left;
+            } else if (c > x.c) {
+                links[length] = RIGHT;
+                path[length++] = x;
+                x = x.right;
+            } else if (d < key.length() - 1) {
+                links[length] = MID;
+                path[length++] = x;
+                x = x.mid;
+                d++;
+            } else {
+                break;
+            }
+        }
+
+        // the new subtrie in place of x
+        Node<Value> copy;
+        int n = version.n;
+        if (x != null) {
+            if (x.val == val) {
+                return version;
+            }
+            if (x.val == null) {
+                n++;
+            } else if (val == null) {
+                n--;
+            }
+            copy = node(x.c, x.left, x.mid, x.right, val);
+        } else if (val == null) {
+            return version; // nothing to delete
+        } else {
+            // key[d..] hangs below the path as a chain of middle links
+            copy = null;
+            for (int i = key.length() - 1; i >= d; i--) {
+                copy = new Node<Value>(key.charAt(i), null, copy, null, i == key.length() - 1 ? val : null);
+            }
+            n++;
+        }
+        for (int i = length - 1; i >= 0; i--) {
+            copy = path[i].with(links[i], copy);
+        }
+        return new Version<Value>(copy, n);
+    }
+
+    /**
+     * Removes the specified key and its associated value from this symbol table
+     * (if the key is in this symbol table), along with the nodes that are left
+     * without a key below them.
+     * @param key the key
+     * @throws IllegalArgumentException if {@code key} is {@code null}
+     */
+    public void delete(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("calls delete() with null key");
+        }
+        put(key, null);
+    }
+
+    /**
+     * Returns the string in the symbol table that is the longest prefix of {@code query},
+     * or {@code null}, if no such string.
+     * @param query the query string
+     * @return the string in the symbol table that is the longest prefix of {@code query},
+     *         or {@code null} if no such string
+     * @throws IllegalArgumentException if {@code query} is {@code null}
+     */
+    public String longestPrefixOf(String query) {
+        if (query == null) {
+            throw new IllegalArgumentException("calls longestPrefixOf() with null argument");
+        }
+        if (query.length() == 0) {
+            return null;
+        }
+        int length = 0;
+        Node<Value> x = current.get().root;
+        int i = 0;
+        while (x != null && i < query.length()) {
+            char c = query.charAt(i);
+            if (c < x.c) {
+                x = x.left;
+            } else if (c > x.c) {
+                x = x.right;
+            } else {
+                i++;
+                if (x.val != null) {
+                    length = i;
+                }
+                x = x.mid;
+            }
+        }
+        return query.substring(0, length);
+    }
+
+    /**
+     * Returns all keys in the symbol table as an {@code Iterable}.
+     * To iterate over all of the keys in the symbol table named {@code st},
+     * use the foreach notation: {@code for (Key key : st.keys())}.
+     * @return all keys in the symbol table as an {@code Iterable}
+     */
+    public Iterable<String> keys() {
+        LinkedList<String> queue = new LinkedList<>();
+        collect(current.get().root, new StringBuilder(), queue);
+        return queue;
+    }
+
+    /**
+     * Returns all of the keys in the set that start with {@code prefix}.
+     * @param prefix the prefix
+     * @return all of the keys in the set that start with {@code prefix},
+     *         as an iterable
+     * @throws IllegalArgumentException if {@code prefix} is {@code null}
+     */
+    public Iterable<String> keysWithPrefix(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("calls keysWithPrefix() with null argument");
+        }
+        if (prefix.length() == 0) {
+            throw new IllegalArgumentException("key must have length >= 1");
+        }
+        LinkedList<String> queue = new LinkedList<>();
+        Node<Value> x = get(current.get().root, prefix);
+        if (x == null) {
+            return queue;
+        }
+        if (x.val != null) {
+            queue.addLast(prefix);
+        }
+        collect(x.mid, new StringBuilder(prefix), queue);
+        return queue;
+    }
+
+    /**
+     * get all keys in subtrie rooted at x with given prefix
+     * @param x the rooted subtrie
+     * @param prefix the specified prefix
+     * @param queue keys started with given prefix in this symbol table
+     */
+    private static <Value> void collect(Node<Value> x, StringBuilder prefix, Queue<String> queue) {
+        if (x == null) {
+            return;
+        }
+        collect(x.left, prefix, queue);
+        if (x.val != null) {
+            queue.add(prefix.toString() + x.c);
+        }
+        collect(x.mid, prefix.append(x.c), queue);
+        prefix.deleteCharAt(prefix.length() - 1);
+        collect(x.right, prefix, queue);
+    }
+
+    /**
+     * Returns all of the keys in the symbol table that match {@code pattern},
+     * where the character '.' is interpreted as a wildcard character.
+     * @param pattern the pattern
+     * @return all of the keys in the symbol table that match {@code pattern},
+     *         as an iterable, where . is treated as a wildcard character.
+     */
+    public Iterable<String> keysThatMatch(String pattern) {
+        LinkedList<String> queue = new LinkedList<>();
+        collect(current.get().root, new StringBuilder(), 0, pattern, queue);
+        return queue;
+    }
+
+    private static <Value> void collect(Node<Value> x, StringBuilder prefix, int i, String pattern,
+                                        Queue<String> queue) {
+        if (x == null) {
+            return;
+        }
+        char c = pattern.charAt(i);
+        if (c == '.' || c < x.c) {
+            collect(x.left, prefix, i, pattern, queue);
+        }
+        if (c == '.' || c == x.c) {
+            if (i == pattern.length() - 1 && x.val != null) {
+                queue.add(prefix.toString() + x.c);
+            }
+            if (i < pattern.length() - 1) {
+                collect(x.mid, prefix.append(x.c), i+1, pattern, queue);
+                prefix.deleteCharAt(prefix.length() - 1);
+            }
+        }
+        if (c == '.' || c > x.c) {
+            collect(x.right, prefix, i, pattern, queue);
+        }
+    }
+
+    /**
+     * Unit tests the {@code ConcurrentTST} data type.
+     *
+     * @param argv the command-line arguments
+     */
+    public static void main(String[] argv) {
+        // build symbol table from standard input
+        ConcurrentTST<Integer> st = new ConcurrentTST<Integer>();
+        Scanner in = new Scanner(System.in);
+        for (int i = 0; in.hasNextLine(); i++) {
+            String key = in.nextLine();
+            st.put(key, i);
+        }
+        in.close();
+
+        // print results
+        if (st.size() < 100) {
+            System.out.println("keys(\"\"):");
+            for (String key : st.keys()) {
+                System.out.println(key + " " + st.get(key));
+            }
+            System.out.println();
+        }
+
+        System.out.println("longestPrefixOf(\"shellsort\"):");
+        System.out.println(st.longestPrefixOf("shellsort"));
+        System.out.println();
+
+        System.out.println("longestPrefixOf(\"shell\"):");
+        System.out.println(st.longestPrefixOf("shell"));
+        System.out.println();
+
+        System.out.println("keysWithPrefix(\"shor\"):");
+        for (String s : st.keysWithPrefix("shor")) {
+            System.out.println(s);
+        }
+        System.out.println();
+
+        System.out.println("keysThatMatch(\".he.l.\"):");
+        for (String s : st.keysThatMatch(".he.l.")) {
+            System.out.println(s);
+        }
+    }
+}
@@ -0,0 +1,386 @@
+/******************************************************************************
+ *  Compilation:  javac IntTST.java
+ *  Execution:    java IntTST < words.txt
+ *
+ *  Symbol table with string keys and int values, implemented using a
+ *  ternary search trie (TST) whose nodes are stored in parallel arrays.
+ *
+ *  % java IntTST < shellsST.txt
+ *  keys(""):
+ *  by 4
+ *  sea 6
+ *  sells 1
+ *  she 0
+ *  shells 3
+ *  shore 7
+ *  the 5
+ *
+ *  longestPrefixOf("shellsort"):
+ *  shells
+ *
+ *  keysWithPrefix("shor"):
+ *  shore
+ *
+ *  keysThatMatch(".he.l."):
+ *  shells
+ *
+ *  Remarks
+ *  --------
+ *    - can't use a key that is the empty string ""
+ *
+ ******************************************************************************/
+package strings.tries;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Scanner;
+
+/**
+ *  The {@code IntTST} class represents an symbol table of key-value
+ *  pairs, with string keys and {@code int} values.
+ *  It supports the same operations as {@link TST}, including delete, without boxing: a missing
+ *  value is given by the sentinel {@link #ABSENT}, which therefore cannot be
+ *  stored—setting the value associated with a key to {@code ABSENT}
+ *  is equivalent to deleting the key from the symbol table.
+ *  It also supports searching and inserting keys given as a range of
+ *  characters of a longer string, so that a client scanning a text does not
+ *  need to extract substrings.
+ *
+ *  This implementation uses a ternary search trie whose nodes live in a pool
+ *  of parallel arrays, as in {@link ArrayTST}, with the values in an
+ *  {@code int[]}. A node takes 18 bytes, about half of an {@link ArrayTST}
+ *  node with a boxed value.
+ *  The arrays can be saved as a binary image, which {@link MappedIntTST}
+ *  memory-maps and searches in place.
+ */
+public class IntTST extends AbstractArrayTST {
+    /**
+     * The value of a key that is not in the symbol table.
+     */
+    public static final int ABSENT = Integer.MIN_VALUE;
+
+    static final int MAGIC = 0x49545354; // image file header: "ITST"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 24; // magic, version, nodes, size, root, unused
+
+    private int[] vals; // vals[x] = value associated with string of node x, or ABSENT
+
+    /**
+     * Initializes an empty string symbol table.
+     */
+    public IntTST() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Initializes an empty string symbol table with room for the given number
+     * of nodes (about the total length of the keys) before the arrays grow.
+     * @param capacity the initial number of nodes
+     * @throws IllegalArgumentException if {@code capacity < 0}
+     */
+    public IntTST(int capacity) {
+        super(capacity);
+        vals = new int[c.length];
+        Arrays.fill(vals, ABSENT);
+    }
+
+    @Override
+    boolean hasValue(int x) {
+        return vals[x] != ABSENT;
+    }
+
+    @Override
+    void clearValue(int x) {
+        vals[x] = ABSENT;
+    }
+
+    @Override
+    void resizeValues(int capacity) {
+        int old = vals.length;
+        vals = Arrays.copyOf(vals, capacity);
+        Arrays.fill(vals, old, capacity, ABSENT);
+    }
+
+    @Override
+    void renumberValues(int[] order, int capacity) {
+        int[] newVals = new int[capacity];
+        newVals[0] = ABSENT;
+        for (int y = 1; y < capacity; y++) {
+            newVals[y] = vals[order[y]];
+        }
+        vals = newVals;
+    }
+
+    /**
+     * Does this symbol table contain the given key?
+     * @param key the key
+     * @return {@code true} if this symbol table contains {@code key} and {@code false} otherwise
+     * @throws IllegalArgumentException if {@code key} is {@code null}
+     */
+    public boolean contains(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("argument to contains() is null");
+        }
+        return get(key) != ABSENT;
+    }
+
+    /**
+     * Returns the value associated with the given key.
+     * @param key the key
+     * @return the value associated with the given key if the key is in the symbol table
+     *         and {@link #ABSENT} if the key is not in the symbol table
+     * @throws IllegalArgumentException if {@code key} is {@code null}
+     */
+    public int get(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("calls get() with null argument");
+        }
+        return get(key, 0, key.length());
+    }
+
+    /**
+     * Returns the value associated with the key made of the {@code length}
+     * characters of {@code s} starting at {@code offset}.
+     * @param s the string
+     * @param offset offset of the key in {@code s}
+     * @param length length of the key
+     * @return the value associated with the key if the key is in the symbol table
+     *         and {@link #ABSENT} if the key is not in the symbol table
+     * @throws IllegalArgumentException if {@code s} is {@code null} or {@code length < 1}
+     * @throws IndexOutOfBoundsException if the key is not within {@code s}
+     */
+    public int get(String s, int offset, int length) {
+        checkKey(s, offset, length);
+        return vals[get(root, s, offset, offset + length)];
+    }
+
+    /**
+     * Inserts the key-value pair into the symbol table, overwriting the old value
+     * with the new value if the key is already in the symbol table.
+     * If the value is {@link #ABSENT}, this effectively deletes the key from the symbol table.
+     * @param key the key
+     * @param val the value
+     * @throws IllegalArgumentException if {@code key} is {@code null}
+     */
+    public void put(String key, int val) {
+        if (key == null) {
+            throw new IllegalArgumentException("calls put() with null key");
+        }
+        put(key, 0, key.length(), val);
+    }
+
+    /**
+     * Inserts the key made of the {@code length} characters of {@code s}
+     * starting at {@code offset}, with the given value, into the symbol table.
+     * @param s the string
+     * @param offset offset of the key in {@code s}
+     * @param length length of the key
+     * @param val the value
+     * @throws IllegalArgumentException if {@code s} is {@code null} or {@code length < 1}
+     * @throws IndexOutOfBoundsException if the key is not within {@code s}
+     */
+    public void put(String s, int offset, int length, int val) {
+        checkKey(s, offset, length);
+        int to = offset + length;
+        if (val == ABSENT) {
+            delete(s, offset, to);
+            return;
+        }
+        int x = insert(s, offset, to);
+        if (vals[x] == ABSENT) {
+            n++;
+        }
+        vals[x] = val;
+    }
+
+    /**
+     * Removes the specified key and its associated value from this symbol table
+     * (if the key is in this symbol table), along with the nodes that are left
+     * without a key below them. The nodes removed are reused by later puts;
+     * {@link #compact()} gives their memory back.
+     * @param key the key
+     * @throws IllegalArgumentException if {@code key} is {@code null}
+     */
+    public void delete(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("calls delete() with null key");
+        }
+        if (key.length() == 0) {
+            throw new IllegalArgumentException("key must have length >= 1");
+        }
+        delete(key, 0, key.length());
+    }
+
+    /**
+     * Inserts the given key-value pairs into the symbol table, as if by
+     * calling {@code put(keys[i], vals[i])} for each i in turn, medians first
+     * as in {@link TST#putAll}.
+     * @param keys the keys
+     * @param vals the values; {@code vals[i]} is associated with {@code keys[i]}
+     * @throws IllegalArgumentException if {@code keys} or {@code vals} is {@code null},
+     *         if they differ in length, or if a key is {@code null}
+     */
+    public void putAll(String[] keys, int[] vals) {
+        if (keys == null || vals == null) {
+            throw new IllegalArgumentException("calls putAll() with null argument");
+        }
+        if (keys.length != vals.length) {
+            throw new IllegalArgumentException("keys and values differ in length");
+        }
+        Integer[] order = new Integer[keys.length];
+        boolean sorted = true;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == null) {
+                throw new IllegalArgumentException("calls putAll() with null key");
+            }
+            order[i] = i;
+            sorted = sorted && (i == 0 || keys[i-1].compareTo(keys[i]) < 0);
+        }
+        if (!sorted) {
+            Arrays.sort(order, (a, b) -> keys[a].compareTo(keys[b])); // stable
+        }
+        // the last of equal keys wins, as with successive puts
+        int distinct = 0;
+        for (int i = 0; i < order.length; i++) {
+            if (i + 1 < order.length && keys[order[i]].equals(keys[order[i+1]])) {
+                continue;
+            }
+            order[distinct++] = order[i];
+        }
+        putMedians(keys, vals, order, 0, distinct - 1);
+    }
+
+    // puts the keys of order[lo..hi], median first
+    private void putMedians(String[] keys, int[] vals, Integer[] order, int lo, int hi) {
+        if (lo > hi) {
+            return;
+        }
+        int median = lo + (hi - lo) / 2;
+        put(keys[order[median]], vals[order[median]]);
+        putMedians(keys, vals, order, lo, median - 1);
+        putMedians(keys, vals, order, median + 1, hi);
+    }
+
+    private static void checkKey(String s, int offset, int length) {
+        if (s == null) {
+            throw new IllegalArgumentException("key is null");
+        }
+        if (length < 1) {
+            throw new IllegalArgumentException("key must have length >= 1");
+        }
+        if (offset < 0 || offset > s.length() - length) {
+            throw new IndexOutOfBoundsException("key [" + offset + ", " + (offset + length) + ") not within string");
+        }
+    }
+
+    /**
+     * Saves this symbol table to the given file, as an image that
+     * {@link MappedIntTST#load(File)} maps for searching without rebuilding.
+     * The file holds a header of six little-endian ints (magic number, version,
+     * number of nodes including the null node 0, size, root, and 0) followed
+     * by the node arrays {@code c}, {@code left}, {@code mid}, {@code right}
+     * and {@code vals}, little-endian, with {@code c} padded to a multiple
+     * of 4 bytes.
+     * @param file the image file
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            channel.truncate(0);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(nodes).putInt(n).putInt(root).putInt(0);
+            for (int x = 0; x < nodes + nodes % 2; x++) {
+                if (buffer.remaining() < 2) {
+                    drain(buffer, channel);
+                }
+                buffer.putChar(x < nodes ? c[x] : '\0');
+            }
+            for (int[] array : new int[][] { left, mid, right, vals }) {
+                for (int x = 0; x < nodes; x++) {
+                    if (buffer.remaining() < 4) {
+                        drain(buffer, channel);
+                    }
+                    buffer.putInt(array[x]);
+                }
+            }
+            drain(buffer, channel);
+        }
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Returns the length of the longest key in the symbol table that is a
+     * prefix of the suffix of {@code query} starting at {@code offset}.
+     * @param query the query string
+     * @param offset the offset in {@code query} at which the key must start
+     * @return the length of the longest such key, or 0 if there is none
+     * @throws IllegalArgumentException if {@code query} is {@code null}
+     * @throws IndexOutOfBoundsException unless {@code 0 <= offset <= query.length()}
+     */
+    public int longestPrefixLength(String query, int offset) {
+        if (query == null) {
+            throw new IllegalArgumentException("calls longestPrefixLength() with null argument");
+        }
+        if (offset < 0 || offset > query.length()) {
+            throw new IndexOutOfBoundsException("offset " + offset + " not within query");
+        }
+        return longestKeyLength(query, offset);
+    }
+
+    /**
+     * Unit tests the {@code IntTST} data type.
+     *
+     * @param argv the command-line arguments
+     */
+    public static void main(String[] argv) {
+        // build symbol table from standard input
+        IntTST st = new IntTST();
+        Scanner in = new Scanner(System.in);
+        for (int i = 0; in.hasNextLine(); i++) {
+            String key = in.nextLine();
+            st.put(key, i);
+        }
+        in.close();
+
+        // print results
+        if (st.size() < 100) {
+            System.out.println("keys(\"\"):");
+            for (String key : st.keys()) {
+                System.out.println(key + " " + st.get(key));
+            }
+            System.out.println();
+        }
+
+        System.out.println("longestPrefixOf(\"shellsort\"):");
+        System.out.println(st.longestPrefixOf("shellsort"));
+        System.out.println();
+
+        System.out.println("longestPrefixOf(\"shell\"):");
+        System.out.println(st.longestPrefixOf("shell"));
+        System.out.println();
+
+        System.out.println("keysWithPrefix(\"shor\"):");
+        for (String s : st.keysWithPrefix("shor")) {
+            System.out.println(s);
+        }
+        System.out.println();
+
+        System.out.println("keysThatMatch(\".he.l.\"):");
+        for (String s : st.keysThatMatch(".he.l.")) {
+            System.out.println(s);
+        }
+    }
+}
@@ -0,0 +1,404 @@
+/******************************************************************************
+ *  Compilation:  javac MappedIntTST.java
+ *  Execution:    java MappedIntTST words.txt words.tst
+ *  Dependencies: IntTST.java
+ *
+ *  Read-only symbol table with string keys and int values, searched in
+ *  place in a memory-mapped image of an IntTST. Builds the image of the
+ *  keys of the given text file, one per line, if it does not exist.
+ *
+ *  % java MappedIntTST shellsST.txt shellsST.tst
+ *  keys(""):
+ *  by 4
+ *  sea 6
+ *  sells 1
+ *  she 0
+ *  shells 3
+ *  shore 7
+ *  the 5
+ *
+ *  longestPrefixOf("shellsort"):
+ *  shells
+ *
+ *  keysWithPrefix("shor"):
+ *  shore
+ *
+ *  keysThatMatch(".he.l."):
+ *  shells
+ *
+ ******************************************************************************/
+package strings.tries;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.Scanner;
+
+/**
+ *  The {@code MappedIntTST} class represents a read-only symbol table of
+ *  key-value pairs, with string keys and {@code int} values, saved by
+ *  {@link IntTST#save(File)}.
+ *  It supports the search operations of {@link IntTST}: get, contains, size,
+ *  is-empty, longest prefix, keys with a prefix and keys that match a pattern.
+ *
+ *  This implementation memory-maps the node arrays of the image read-only
+ *  and searches them where they are, so loading takes time independent of
+ *  the size of the symbol table, and the pages of the image are read, and
+ *  shared between processes, by the operating system as they are used.
+ *  Only absolute reads are made, so one instance may be shared by threads.
+ *  The arrays are mapped in segments of 2^28 entries, so an image of any
+ *  size can be opened.
+ */
+public class MappedIntTST {
+    private static final int SEGMENT_BITS = 28; // arrays are mapped in segments of 2^28 entries
+    private static final int SEGMENT_MASK = (1 << SEGMENT_BITS) - 1;
+
+    private final int n; // size
+    private final int root; // root of TST, 0 if empty
+    private final CharBuffer[] c; // get(c, x) = character of node x
+    private final IntBuffer[] left, mid, right; // left, middle, and right subtries of node x
+    private final IntBuffer[] vals; // get(vals, x) = value associated with string of node x, or ABSENT
+
+    private MappedIntTST(int n, int root, CharBuffer[] c, IntBuffer[] left, IntBuffer[] mid, IntBuffer[] right,
+                         IntBuffer[] vals) {
+        this.n = n;
+        this.root = root;
+        this.c = c;
+        this.left = left;
+        this.mid = mid;
+        this.right = right;
+        this.vals = vals;
+    }
+
+    /**
+     * Opens an image written by {@link IntTST#save(File)}.
+     * @param file the image file
+     * @return the symbol table backed by the mapped file
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is not an image of an {@code IntTST}
+     */
+    public static MappedIntTST load(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            if (channel.size() < IntTST.HEADER_BYTES) {
+                throw new IllegalArgumentException("not an IntTST image file: " + file);
+            }
+            ByteBuffer header = map(channel, 0, IntTST.HEADER_BYTES);
+            if (header.getInt(0) != IntTST.MAGIC || header.getInt(4) != IntTST.VERSION) {
+                throw new IllegalArgumentException("not an IntTST image file: " + file);
+            }
+            int nodes = header.getInt(8);
+            long charBytes = 2L * (nodes + nodes % 2);
+            long intBytes = 4L * nodes;
+            if (nodes < 1 || channel.size() != IntTST.HEADER_BYTES + charBytes + 4 * intBytes) {
+                throw new IllegalArgumentException("truncated or corrupt IntTST image file: " + file);
+            }
+            long position = IntTST.HEADER_BYTES;
+            ByteBuffer[] chars = map(channel, position, nodes, 2);
+            CharBuffer[] c = new CharBuffer[chars.length];
+            for (int k = 0; k < c.length; k++) {
+                c[k] = chars[k].asCharBuffer();
+            }
+            position += charBytes;
+            IntBuffer[][] arrays = new IntBuffer[4][];
+            for (int i = 0; i < arrays.length; i++) {
+                ByteBuffer[] ints = map(channel, position, nodes, 4);
+                arrays[i] = new IntBuffer[ints.length];
+                for (int k = 0; k < ints.length; k++) {
+                    arrays[i][k] = ints[k].asIntBuffer();
+                }
+                position += intBytes;
+            }
+            return new MappedIntTST(header.getInt(12), header.getInt(16), c,
+                                    arrays[0], arrays[1], arrays[2], arrays[3]);
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long bytes) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // the count entries of the given width at the given position of the file, mapped in segments
+    private static ByteBuffer[] map(FileChannel channel, long position, int count, int width) throws IOException {
+        ByteBuffer[] segments = new ByteBuffer[(int) (((long) count + SEGMENT_MASK) >>> SEGMENT_BITS)];
+        for (int k = 0; k < segments.length; k++) {
+            long first = (long) k << SEGMENT_BITS;
+            long length = Math.min(SEGMENT_MASK + 1L, count - first);
+            segments[k] = map(channel, position + width * first, width * length);
+        }
+        return segments;
+    }
+
+    private static char get(CharBuffer[] array, int x) {
+        return array[x >>> SEGMENT_BITS].get(x & SEGMENT_MASK);
+    }
+
+    private static int get(IntBuffer[] array, int x) {
+        return array[x >>> SEGMENT_BITS].get(x & SEGMENT_MASK);
+    }
+
+    /**
+     * Returns the number of key-value pairs in this symbol table.
+     * @return the number of key-value pairs in this symbol table
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Is this symbol table empty?
+     * @return {@code true} if this symbol table is empty and {@code false} otherwise
+     */
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    /**
+     * Does this symbol table contain the given key?
+     * @param key the key
+     * @return {@code true} if this symbol table contains {@code key} and {@code false} otherwise
+     * @throws IllegalArgumentException if {@code key} is {@code null}
+     */
+    public boolean contains(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("argument to contains() is null");
+        }
+        return get(key) != IntTST.ABSENT;
+    }
+
+    /**
+     * Returns the value associated with the given key.
+     * @param key the key
+     * @return the value associated with the given key if the key is in the symbol table
+     *         and {@link IntTST#ABSENT} if the key is not in the symbol table
+     * @throws IllegalArgumentException if {@code key} is {@code null}
+     */
+    public int get(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("calls get() with null argument");
+        }
+        if (key.length() == 0) {
+            throw new IllegalArgumentException("key must have length >= 1");
+        }
+        return get(vals, get(root, key));
+    }
+
+    /**
+     * return node corresponding to given key
+     * @param x root of the subtrie to search
+     * @param key search key
+     * @return node corresponding to given key, or 0 if there is none
+     */
+    private int get(int x, String key) {
+        int d = 0;
+        while (x != 0) {
+            char ch = key.charAt(d);
+            char cx = get(c, x);
+            if (ch < cx) {
+                x = get(left, x);
+            } else if (ch > cx) {
+                x = get(right, x);
+            } else if (d < key.length() - 1) {
+                x = get(mid, x);
+                d++;
+            } else {
+                return x;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the string in the symbol table that is the longest prefix of {@code query},
+     * or {@code null}, if no such string.
+     * @param query the query string
+     * @return the string in the symbol table that is the longest prefix of {@code query},
+     *         or {@code null} if no such string
+     * @throws IllegalArgumentException if {@code query} is {@code null}
+     */
+    public String longestPrefixOf(String query) {
+        if (query == null) {
+            throw new IllegalArgumentException("calls longestPrefixOf() with null argument");
+        }
+        if (query.length() == 0) {
+            return null;
+        }
+        int length = 0;
+        int x = root;
+        int i = 0;
+        while (x != 0 && i < query.length()) {
+            char ch = query.charAt(i);
+            char cx = get(c, x);
+            if (ch < cx) {
+                x = get(left, x);
+            } else if (ch > cx) {
+                x = get(right, x);
+            } else {
+                i++;
+                if (get(vals, x) != IntTST.ABSENT) {
+                    length = i;
+                }
+                x = get(mid, x);
+            }
+        }
+        return query.substring(0, length);
+    }
+
+    /**
+     * Returns all keys in the symbol table as an {@code Iterable}.
+     * To iterate over all of the keys in the symbol table named {@code st},
+     * use the foreach notation: {@code for (Key key : st.keys())}.
+     * @return all keys in the symbol table as an {@code Iterable}
+     */
+    public Iterable<String> keys() {
+        LinkedList<String> queue = new LinkedList<>();
+        collect(root, new StringBuilder(), queue);
+        return queue;
+    }
+
+    /**
+     * Returns all of the keys in the set that start with {@code prefix}.
+     * @param prefix the prefix
+     * @return all of the keys in the set that start with {@code prefix},
+     *         as an iterable
+     * @throws IllegalArgumentException if {@code prefix} is {@code null}
+     */
+    public Iterable<String> keysWithPrefix(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("calls keysWithPrefix() with null argument");
+        }
+        if (prefix.length() == 0) {
+            throw new IllegalArgumentException("key must have length >= 1");
+        }
+        LinkedList<String> queue = new LinkedList<>();
+        int x = get(root, prefix);
+        if (x == 0) {
+            return queue;
+        }
+        if (get(vals, x) != IntTST.ABSENT) {
+            queue.addLast(prefix);
+        }
+        collect(get(mid, x), new StringBuilder(prefix), queue);
+        return queue;
+    }
+
+    /**
+     * get all keys in subtrie rooted at x with given prefix
+     * @param x the rooted subtrie
+     * @param prefix the specified prefix
+     * @param queue keys started with given prefix in this symbol table
+     */
+    private void collect(int x, StringBuilder prefix, Queue<String> queue) {
+        if (x == 0) {
+            return;
+        }
+        collect(get(left, x), prefix, queue);
+        if (get(vals, x) != IntTST.ABSENT) {
+            queue.add(prefix.toString() + get(c, x));
+        }
+        collect(get(mid, x), prefix.append(get(c, x)), queue);
+        prefix.deleteCharAt(prefix.length() - 1);
+        collect(get(right, x), prefix, queue);
+    }
+
+    /**
+     * Returns all of the keys in the symbol table that match {@code pattern},
+     * where the character '.' is interpreted as a wildcard character.
+     * @param pattern the pattern
+     * @return all of the keys in the symbol table that match {@code pattern},
+     *         as an iterable, where . is treated as a wildcard character.
+     */
+    public Iterable<String> keysThatMatch(String pattern) {
+        LinkedList<String> queue = new LinkedList<>();
+        collect(root, new StringBuilder(), 0, pattern, queue);
+        return queue;
+    }
+
+    private void collect(int x, StringBuilder prefix, int i, String pattern, Queue<String> queue) {
+        if (x == 0) {
+            return;
+        }
+        char ch = pattern.charAt(i);
+        char cx = get(c, x);
+        if (ch == '.' || ch < cx) {
+            collect(get(left, x), prefix, i, pattern, queue);
+        }
+        if (ch == '.' || ch == cx) {
+            if (i == pattern.length() - 1 && get(vals, x) != IntTST.ABSENT) {
+                queue.add(prefix.toString() + cx);
+            }
+            if (i < pattern.length() - 1) {
+                collect(get(mid, x), prefix.append(cx), i+1, pattern, queue);
+                prefix.deleteCharAt(prefix.length() - 1);
+            }
+        }
+        if (ch == '.' || ch > cx) {
+            collect(get(right, x), prefix, i, pattern, queue);
+        }
+    }
+
+    /**
+     * Maps the image file named as the second command-line argument, after
+     * building it from the keys of the file named as the first, one per line,
+     * if it does not exist; then unit tests the {@code MappedIntTST} data type.
+     *
+     * @param argv the command-line arguments
+     */
+    public static void main(String[] argv) {
+        try {
+            File image = new File(argv[1]);
+            if (!image.exists()) {
+                IntTST built = new IntTST();
+                Scanner in = new Scanner(new File(argv[0]));
+                for (int i = 0; in.hasNextLine(); i++) {
+                    built.put(in.nextLine(), i);
+                }
+                in.close();
+                built.save(image);
+            }
+            MappedIntTST st = MappedIntTST.load(image);
+
+            // print results
+            if (st.size() < 100) {
+                System.out.println("keys(\"\"):");
+                for (String key : st.keys()) {
+                    System.out.println(key + " " + st.get(key));
+                }
+                System.out.println();
+            }
+
+            System.out.println("longestPrefixOf(\"shellsort\"):");
+            System.out.println(st.longestPrefixOf("shellsort"));
+            System.out.println();
+
+            System.out.println("longestPrefixOf(\"shell\"):");
+            System.out.println(st.longestPrefixOf("shell"));
+            System.out.println();
+
+            System.out.println("keysWithPrefix(\"shor\"):");
+            for (String s : st.keysWithPrefix("shor")) {
+                System.out.println(s);
+            }
+            System.out.println();
+
+            System.out.println("keysThatMatch(\".he.l.\"):");
+            for (String s : st.keysThatMatch(".he.l.")) {
+                System.out.println(s);
+            }
+        } catch (FileNotFoundException e) {
+            System.out.println("Cannot open specified file");
+            e.printStackTrace();
+        } catch (IOException e) {
+            System.out.println("Cannot read or write image file");
+            e.printStackTrace();
+        }
+    }
+}
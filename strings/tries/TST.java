@@ -31,9 +31,19 @@
  ******************************************************************************/
 package strings.tries;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.Queue;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 import java.util.Scanner;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  *  The {@code TST} class represents an symbol table of key-value
@@ -51,6 +61,19 @@ import java.util.Scanner;
  *  is equivalent to deleting the key from the symbol table.
  *
  *  This implementation uses a ternary search trie.
+ *  The get and put operations walk down the trie in a loop rather than
+ *  recursively, so their stack use does not grow with the length of the key.
+ *  Since the shape of a ternary search trie depends on the order in which
+ *  keys are inserted, {@code putAll} inserts a batch of keys medians first,
+ *  and {@code rebalance} balances a trie built in any order.
+ *  The keys with a prefix or matching a pattern can also be had lazily, with
+ *  a limit or as a stream, from a traversal with an explicit stack that stops
+ *  as soon as no more keys are wanted.
+ *  Keys may be given scores, and each node records the highest score in its
+ *  subtrie, so that the k highest scoring keys with a prefix are found by a
+ *  best-first search that prunes the subtries that cannot hold one of them.
+ *  The keys within a given edit distance of a query are found by the same
+ *  traversal as the keys with a prefix, pruned by the edit distance.
  */
 public class TST<Value> {
     private int n; // size
@@ -60,6 +83,12 @@ public class TST<Value> {
         private char c; // character
         private Node<Value> left, mid, right;  // left, middle, and right subtries
         private Value val; // value associated with string
+        private double score = Double.NEGATIVE_INFINITY; // score of the string, if it has a value
+        private double max = Double.NEGATIVE_INFINITY; // highest score in this subtrie
+
+        private Node(char c) {
+            this.c = c;
+        }
     }
 
     /**
@@ -124,22 +153,28 @@ public class TST<Value> {
         if (key.length() == 0) {
             throw new IllegalArgumentException("key must have length >= 1");
         }
-        char c = key.charAt(d);
-        if (c < x.c) {
-            return get(x.left,  key, d);
-        } else if (c > x.c) {
-            return get(x.right, key, d);
-        } else if (d < key.length() - 1) {
-            return get(x.mid, key, d+1);
-        } else {
-            return x;
+        while (x != null) {
+            char c = key.charAt(d);
+            if (c < x.c) {
+                x = x.left;
+            } else if (c > x.c) {
+                x = x.right;
+            } else if (d < key.length() - 1) {
+                x = x.mid;
+                d++;
+            } else {
+                return x;
+            }
         }
+        return null;
     }
 
     /**
      * Inserts the key-value pair into the symbol table, overwriting the old value
      * with the new value if the key is already in the symbol table.
      * If the value is {@code null}, this effectively deletes the key from the symbol table.
+     * A key already in the symbol table keeps its score; a new key is given
+     * the score 0, as by {@code put(key, val, 0)}.
      * @param key the key
      * @param val the value
      * @throws IllegalArgumentException if {@code key} is {@code null}
@@ -148,32 +183,388 @@ public class TST<Value> {
         if (key == null) {
             throw new IllegalArgumentException("calls put() with null key");
         }
-        if (!contains(key)) {
+        if (key.length() == 0) {
+            throw new IllegalArgumentException("key must have length >= 1");
+        }
+        Node<Value> x = get(root, key, 0);
+        if (x != null && x.val != null && val != null) {
+            x.val = val; // same score, so the highest scores on the path stand
+            return;
+        }
+        put(key, val, 0);
+    }
+
+    /**
+     * Inserts the key-value pair into the symbol table with the given score,
+     * which ranks the key in {@link #topKWithPrefix}, overwriting the old
+     * value and score if the key is already in the symbol table.
+     * If the value is {@code null}, this effectively deletes the key from the symbol table.
+     * @param key the key
+     * @param val the value
+     * @param score the score of the key
+     * @throws IllegalArgumentException if {@code key} is {@code null}, or if {@code score}
+     *         is NaN or {@code Double.NEGATIVE_INFINITY}, which marks a node without a value
+     */
+    public void put(String key, Value val, double score) {
+        if (key == null) {
+            throw new IllegalArgumentException("calls put() with null key");
+        }
+        if (key.length() == 0) {
+            throw new IllegalArgumentException("key must have length >= 1");
+        }
+        if (Double.isNaN(score) || score == Double.NEGATIVE_INFINITY) {
+            throw new IllegalArgumentException("score must be a number greater than -infinity");
+        }
+        if (val == null) {
+            delete(key);
+            return;
+        }
+        if (root == null) {
+            root = new Node<Value>(key.charAt(0));
+        }
+        Node<Value> x = root;
+        int d = 0;
+        while (true) {
+            x.max = Math.max(x.max, score);
+            char c = key.charAt(d);
+            if (c < x.c) {
+                if (x.left == null) {
+                    x.left = new Node<Value>(c);
+                }
+                x = x.left;
+            } else if (c > x.c) {
+                if (x.right == null) {
+                    x.right = new Node<Value>(c);
+                }
+                x = x.right;
+            } else if (d < key.length() - 1) {
+                d++;
+                if (x.mid == null) {
+                    x.mid = new Node<Value>(key.charAt(d));
+                }
+                x = x.mid;
+            } else {
+                break;
+            }
+        }
+        boolean lowered = x.val != null && score < x.score;
+        if (x.val == null) {
             n++;
-        } else if (val == null) {
-            n--; // delete existing key
         }
-        root = put(root, key, val, 0);
+        x.val = val;
+        x.score = score;
+        if (lowered) {
+            updateMax(key);
+        }
+    }
+
+    // recomputes the highest scores of the subtries on the path to key,
+    // after the score of key was lowered
+    private void updateMax(String key) {
+        List<Node<Value>> path = path(key);
+        for (int i = path.size() - 1; i >= 0; i--) {
+            updateMax(path.get(i));
+        }
+    }
+
+    // the nodes on the search path for key, from the root; the last is the
+    // node of key if there is one
+    private List<Node<Value>> path(String key) {
+        List<Node<Value>> path = new ArrayList<>();
+        Node<Value> x = root;
+        int d = 0;
+        while (x != null) {
+            path.add(x);
+            char c = key.charAt(d);
+            if (c < x.c) {
+                x = x.left;
+            } else if (c > x.c) {
+                x = x.right;
+            } else if (d < key.length() - 1) {
+                x = x.mid;
+                d++;
+            } else {
+                return path;
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Removes the specified key and its associated value from this symbol table
+     * (if the key is in this symbol table), along with the nodes that are left
+     * without a key below them.
+     * @param key the key
+     * @throws IllegalArgumentException if {@code key} is {@code null}
+     */
+    public void delete(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("calls delete() with null key");
+        }
+        if (key.length() == 0) {
+            throw new IllegalArgumentException("key must have length >= 1");
+        }
+        Node<Value> x = get(root, key, 0);
+        if (x == null || x.val == null) {
+            return;
+        }
+        List<Node<Value>> path = path(key); // ends at x
+        x.val = null;
+        x.score = Double.NEGATIVE_INFINITY;
+        n--;
+
+        // prune, from the bottom, the nodes with neither a value nor a middle subtrie
+        int i = path.size() - 1;
+        while (i >= 0 && path.get(i).val == null && path.get(i).mid == null) {
+            Node<Value> y = path.get(i);
+            Node<Value> replacement = remove(y);
+            if (i == 0) {
+                root = replacement;
+            } else {
+                Node<Value> parent = path.get(i - 1);
+                if (parent.left == y) {
+                    parent.left = replacement;
+                } else if (parent.right == y) {
+                    parent.right = replacement;
+                } else {
+                    parent.mid = replacement;
+                }
+            }
+            i--;
+        }
+        for (; i >= 0; i--) {
+            updateMax(path.get(i));
+        }
+    }
+
+    // removes x from the tree of left and right links it is in, as in Hibbard
+    // deletion from a binary search tree; returns the tree that replaces x
+    private static <Value> Node<Value> remove(Node<Value> x) {
+        if (x.left == null) {
+            return x.right;
+        }
+        if (x.right == null) {
+            return x.left;
+        }
+        // the successor of x in the tree takes its place
+        List<Node<Value>> spine = new ArrayList<>();
+        Node<Value> successor = x.right;
+        while (successor.left != null) {
+            spine.add(successor);
+            successor = successor.left;
+        }
+        if (!spine.isEmpty()) {
+            spine.get(spine.size() - 1).left = successor.right;
+            successor.right = x.right;
+            for (int i = spine.size() - 1; i >= 0; i--) {
+                updateMax(spine.get(i));
+            }
+        }
+        successor.left = x.left;
+        updateMax(successor);
+        return successor;
+    }
+
+    // highest score of the subtrie x, from those of its subtries
+    private static <Value> void updateMax(Node<Value> x) {
+        x.max = x.score;
+        if (x.left != null) {
+            x.max = Math.max(x.max, x.left.max);
+        }
+        if (x.mid != null) {
+            x.max = Math.max(x.max, x.mid.max);
+        }
+        if (x.right != null) {
+            x.max = Math.max(x.max, x.right.max);
+        }
     }
 
-    private Node<Value> put(Node<Value> x, String key, Value val, int d) {
-        char c = key.charAt(d);
+    /**
+     * Inserts the given key-value pairs into the symbol table, as if by
+     * calling {@code put(keys[i], vals[i])} for each i in turn.
+     * The keys are sorted, if they are not already, and inserted medians first,
+     * so that a bulk load of sorted keys builds balanced subtries rather than
+     * the linked lists that inserting them in order would.
+     * @param keys the keys
+     * @param vals the values; {@code vals[i]} is associated with {@code keys[i]}
+     * @throws IllegalArgumentException if {@code keys} or {@code vals} is {@code null},
+     *         if they differ in length, or if a key is {@code null}
+     */
+    public void putAll(String[] keys, Value[] vals) {
+        if (keys == null || vals == null) {
+            throw new IllegalArgumentException("calls putAll() with null argument");
+        }
+        if (keys.length != vals.length) {
+            throw new IllegalArgumentException("keys and values differ in length");
+        }
+        Integer[] order = new Integer[keys.length];
+        boolean sorted = true;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == null) {
+                throw new IllegalArgumentException("calls putAll() with null key");
+            }
+            order[i] = i;
+            sorted = sorted && (i == 0 || keys[i-1].compareTo(keys[i]) < 0);
+        }
+        if (!sorted) {
+            Arrays.sort(order, (a, b) -> keys[a].compareTo(keys[b])); // stable
+        }
+        // the last of equal keys wins, as with successive puts
+        int distinct = 0;
+        for (int i = 0; i < order.length; i++) {
+            if (i + 1 < order.length && keys[order[i]].equals(keys[order[i+1]])) {
+                continue;
+            }
+            order[distinct++] = order[i];
+        }
+        putMedians(keys, vals, order, 0, distinct - 1);
+    }
+
+    // puts the keys of order[lo..hi], median first
+    private void putMedians(String[] keys, Value[] vals, Integer[] order, int lo, int hi) {
+        if (lo > hi) {
+            return;
+        }
+        int median = lo + (hi - lo) / 2;
+        put(keys[order[median]], vals[order[median]]);
+        putMedians(keys, vals, order, lo, median - 1);
+        putMedians(keys, vals, order, median + 1, hi);
+    }
+
+    /**
+     * Rebalances the symbol table: rebuilds the binary search tree formed by
+     * the left and right links among the nodes of each character position
+     * into a balanced one, so that each character of a search takes time
+     * logarithmic in the number of distinct characters at its position.
+     * The nodes are relinked, not copied.
+     */
+    public void rebalance() {
+        Deque<Node<Value>> pending = new ArrayDeque<>(); // nodes whose mid subtrie is to be rebalanced
+        root = balance(root, pending);
+        while (!pending.isEmpty()) {
+            Node<Value> x = pending.pop();
+            x.mid = balance(x.mid, pending);
+        }
+    }
+
+    // rebuilds the tree of left and right links rooted at x as a balanced
+    // tree, pushing each of its nodes onto pending; returns the new root
+    private Node<Value> balance(Node<Value> x, Deque<Node<Value>> pending) {
         if (x == null) {
-            x = new Node<Value>();
-            x.c = c;
-        }
-        if (c < x.c) {
-            x.left = put(x.left, key, val, d);
-        } else if (c > x.c) {
-            x.right = put(x.right, key, val, d);
-        } else if (d < key.length() - 1)  {
-            x.mid = put(x.mid, key, val, d+1);
-        } else {
-            x.val = val;
+            return null;
+        }
+        List<Node<Value>> inorder = new ArrayList<>();
+        Deque<Node<Value>> path = new ArrayDeque<>();
+        while (x != null || !path.isEmpty()) {
+            if (x != null) {
+                path.push(x);
+                x = x.left;
+            } else {
+                x = path.pop();
+                inorder.add(x);
+                pending.push(x);
+                x = x.right;
+            }
         }
+        return link(inorder, 0, inorder.size() - 1);
+    }
+
+    private Node<Value> link(List<Node<Value>> inorder, int lo, int hi) {
+        if (lo > hi) {
+            return null;
+        }
+        int median = lo + (hi - lo) / 2;
+        Node<Value> x = inorder.get(median);
+        x.left = link(inorder, lo, median - 1);
+        x.right = link(inorder, median + 1, hi);
+        updateMax(x); // the middle subtrie holds the same keys, whatever its shape
         return x;
     }
 
+    /**
+     * Returns the k keys with the highest scores among those that start with
+     * {@code prefix}, highest score first. Every subtrie records the highest
+     * score in it, so the search expands subtries in order of that score and
+     * stops after k keys, visiting only the subtries that could hold one of
+     * them rather than every completion of the prefix.
+     * @param prefix the prefix; the empty string for all keys
+     * @param k the number of keys
+     * @return the k highest scoring keys that start with {@code prefix},
+     *         or all of them if there are fewer than k
+     * @throws IllegalArgumentException if {@code prefix} is {@code null} or {@code k < 0}
+     */
+    public List<String> topKWithPrefix(String prefix, int k) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("calls topKWithPrefix() with null argument");
+        }
+        if (k < 0) {
+            throw new IllegalArgumentException("k must be non-negative");
+        }
+        List<String> top = new ArrayList<>();
+        PriorityQueue<Candidate<Value>> pq = new PriorityQueue<>();
+        if (prefix.length() == 0) {
+            Candidate.offer(pq, root, "");
+        } else {
+            Node<Value> x = get(root, prefix, 0);
+            if (x == null) {
+                return top;
+            }
+            if (x.val != null) {
+                pq.add(new Candidate<Value>(null, prefix, x.score));
+            }
+            Candidate.offer(pq, x.mid, prefix);
+        }
+        while (top.size() < k && !pq.isEmpty()) {
+            Candidate<Value> best = pq.poll();
+            Node<Value> x = best.subtrie;
+            if (x == null) {
+                top.add(best.prefix); // a key, and no subtrie left holds a higher score
+                continue;
+            }
+            String key = best.prefix + x.c;
+            if (x.val != null) {
+                pq.add(new Candidate<Value>(null, key, x.score));
+            }
+            Candidate.offer(pq, x.left, best.prefix);
+            Candidate.offer(pq, x.mid, key);
+            Candidate.offer(pq, x.right, best.prefix);
+        }
+        return top;
+    }
+
+    /**
+     * A key, or a subtrie whose keys all start with a prefix, ranked by its
+     * score, or by the highest score in the subtrie.
+     */
+    private static class Candidate<Value> implements Comparable<Candidate<Value>> {
+        private final Node<Value> subtrie; // the subtrie, or null for a key
+        private final String prefix; // the key, or the prefix of the keys of the subtrie
+        private final double score;
+
+        private Candidate(Node<Value> subtrie, String prefix, double score) {
+            this.subtrie = subtrie;
+            this.prefix = prefix;
+            this.score = score;
+        }
+
+        // adds subtrie x to pq, unless it holds no keys
+        private static <Value> void offer(PriorityQueue<Candidate<Value>> pq, Node<Value> x, String prefix) {
+            if (x != null && x.max > Double.NEGATIVE_INFINITY) {
+                pq.add(new Candidate<Value>(x, prefix, x.max));
+            }
+        }
+
+        // higher scores first, and keys before subtries of the same score
+        @Override
+        public int compareTo(Candidate<Value> that) {
+            int cmp = Double.compare(that.score, this.score);
+            if (cmp != 0) {
+                return cmp;
+            }
+            return Boolean.compare(this.subtrie != null, that.subtrie != null);
+        }
+    }
+
     /**
      * Returns the string in the symbol table that is the longest prefix of {@code query},
      * or {@code null}, if no such string.
@@ -217,7 +608,7 @@ public class TST<Value> {
      */
     public Iterable<String> keys() {
         LinkedList<String> queue = new LinkedList<>();
-        collect(root, new StringBuilder(), queue);
+        new KeyIterator(root, "", null, null, Integer.MAX_VALUE).forEachRemaining(queue::add);
         return queue;
     }
 
@@ -229,38 +620,46 @@ public class TST<Value> {
      * @throws IllegalArgumentException if {@code prefix} is {@code null}
      */
     public Iterable<String> keysWithPrefix(String prefix) {
+        LinkedList<String> queue = new LinkedList<>();
+        keysWithPrefix(prefix, Integer.MAX_VALUE).forEach(queue::add);
+        return queue;
+    }
+
+    /**
+     * Returns the first {@code limit} keys, in sorted order, that start with
+     * {@code prefix}. The keys are found lazily, as they are iterated over,
+     * so that taking the first few completions of a short prefix does not
+     * visit or build the others. The trie must not be modified during an
+     * iteration.
+     * @param prefix the prefix
+     * @param limit the maximum number of keys to return
+     * @return the first {@code limit} keys that start with {@code prefix},
+     *         as a lazy iterable
+     * @throws IllegalArgumentException if {@code prefix} is {@code null} or {@code limit < 0}
+     */
+    public Iterable<String> keysWithPrefix(String prefix, int limit) {
         if (prefix == null) {
             throw new IllegalArgumentException("calls keysWithPrefix() with null argument");
         }
-        LinkedList<String> queue = new LinkedList<>();
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must be non-negative");
+        }
         Node<Value> x = get(root, prefix, 0);
         if (x == null) {
-            return queue;
-        }
-        if (x.val != null) {
-            queue.addLast(prefix);
+            return Collections.emptyList();
         }
-        collect(x.mid, new StringBuilder(prefix), queue);
-        return queue;
+        return () -> new KeyIterator(x.mid, prefix, x.val != null ? prefix : null, null, limit);
     }
 
     /**
-     * get all keys in subtrie rooted at x with given prefix
-     * @param x the rooted subtrie
-     * @param prefix the specified prefix
-     * @param queue keys started with given prefix in this symbol table
+     * Returns a sequential stream of the keys, in sorted order, that start
+     * with {@code prefix}, found lazily as the stream is consumed.
+     * @param prefix the prefix
+     * @return the keys that start with {@code prefix}, as a lazy stream
+     * @throws IllegalArgumentException if {@code prefix} is {@code null}
      */
-    private void collect(Node<Value> x, StringBuilder prefix, Queue<String> queue) {
-        if (x == null) {
-            return;
-        }
-        collect(x.left, prefix, queue);
-        if (x.val != null) {
-            queue.add(prefix.toString() + x.c);
-        }
-        collect(x.mid, prefix.append(x.c), queue);
-        prefix.deleteCharAt(prefix.length() - 1);
-        collect(x.right, prefix, queue);
+    public Stream<String> keysWithPrefixStream(String prefix) {
+        return StreamSupport.stream(keysWithPrefix(prefix, Integer.MAX_VALUE).spliterator(), false);
     }
 
     /**
@@ -272,29 +671,205 @@ public class TST<Value> {
      */
     public Iterable<String> keysThatMatch(String pattern) {
         LinkedList<String> queue = new LinkedList<>();
-        collect(root, new StringBuilder(), 0, pattern, queue);
+        keysThatMatch(pattern, Integer.MAX_VALUE).forEach(queue::add);
         return queue;
     }
 
-    private void collect(Node<Value> x, StringBuilder prefix, int i, String pattern, Queue<String> queue) {
-        if (x == null) {
-            return;
+    /**
+     * Returns the first {@code limit} keys, in sorted order, that match
+     * {@code pattern}, where the character '.' is interpreted as a wildcard
+     * character. The keys are found lazily, as they are iterated over.
+     * The trie must not be modified during an iteration.
+     * @param pattern the pattern
+     * @param limit the maximum number of keys to return
+     * @return the first {@code limit} keys that match {@code pattern},
+     *         as a lazy iterable
+     * @throws IllegalArgumentException if {@code pattern} is {@code null} or {@code limit < 0}
+     */
+    public Iterable<String> keysThatMatch(String pattern, int limit) {
+        if (pattern == null) {
+            throw new IllegalArgumentException("calls keysThatMatch() with null argument");
         }
-        char c = pattern.charAt(i);
-        if (c == '.' || c < x.c) {
-            collect(x.left, prefix, i, pattern, queue);
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must be non-negative");
         }
-        if (c == '.' || c == x.c) {
-            if (i == pattern.length() - 1 && x.val != null) {
-                queue.add(prefix.toString() + x.c);
+        if (pattern.length() == 0) {
+            return Collections.emptyList();
+        }
+        return () -> new KeyIterator(root, "", null, pattern, limit);
+    }
+
+    /**
+     * Returns a sequential stream of the keys, in sorted order, that match
+     * {@code pattern}, found lazily as the stream is consumed.
+     * @param pattern the pattern
+     * @return the keys that match {@code pattern}, as a lazy stream
+     * @throws IllegalArgumentException if {@code pattern} is {@code null}
+     */
+    public Stream<String> keysThatMatchStream(String pattern) {
+        return StreamSupport.stream(keysThatMatch(pattern, Integer.MAX_VALUE).spliterator(), false);
+    }
+
+    /**
+     * Returns all of the keys in the symbol table whose edit distance to
+     * {@code query} (the number of insertions, deletions and substitutions of
+     * characters to turn one into the other) is at most k, in sorted order.
+     * The traversal carries a row of the edit distance table down the trie,
+     * one row per character of the prefix, and does not descend below a node
+     * once every entry of its row exceeds k, so only the part of the trie
+     * near the query is visited.
+     * @param query the query string
+     * @param k the maximum edit distance
+     * @return all of the keys within edit distance k of {@code query}, as an iterable
+     * @throws IllegalArgumentException if {@code query} is {@code null} or {@code k < 0}
+     */
+    public Iterable<String> keysWithinDistance(String query, int k) {
+        if (query == null) {
+            throw new IllegalArgumentException("calls keysWithinDistance() with null argument");
+        }
+        if (k < 0) {
+            throw new IllegalArgumentException("k must be non-negative");
+        }
+        LinkedList<String> queue = new LinkedList<>();
+        new KeyIterator(root, query, k).forEachRemaining(queue::add);
+        return queue;
+    }
+
+    /**
+     * In-order traversal of a subtrie with an explicit stack, which yields
+     * the keys one at a time. A frame either visits a whole subtrie or, once
+     * the left subtrie of its node is done, yields the key of the node and
+     * visits its middle subtrie. The prefix buffer holds the characters above
+     * the frame being run; a frame at depth d only changes positions d and up.
+     */
+    private class KeyIterator implements Iterator<String> {
+        private final String pattern; // keys must match this pattern, or null for any key
+        private final String query; // keys must be within edit distance k of this query, or null for any key
+        private final int k;
+        private final int[][] rows; // rows[d][j] = edit distance between the prefix of length d and query[0, j)
+        private final StringBuilder prefix;
+        private Node<Value>[] nodes; // stack of frames: node
+        private int[] depths; // and depth, or ~depth for a frame that yields the node's key
+        private int top;
+        private String next; // next key to return, or null to find it
+        private int remaining; // keys left to return, including next
+
+        KeyIterator(Node<Value> x, String prefix, String first, String pattern, int limit) {
+            this(x, prefix, first, pattern, null, 0, limit);
+        }
+
+        // the keys below x within edit distance k of query
+        KeyIterator(Node<Value> x, String query, int k) {
+            this(x, "", null, null, query, k, Integer.MAX_VALUE);
+        }
+
+        @SuppressWarnings("unchecked")
+        private KeyIterator(Node<Value> x, String prefix, String first, String pattern,
+                            String query, int k, int limit) {
+            this.pattern = pattern;
+            this.query = query;
+            this.k = k;
+            this.prefix = new StringBuilder(prefix);
+            this.next = first;
+            this.remaining = limit;
+            if (query != null) {
+                rows = new int[query.length() + k + 2][];
+                rows[0] = new int[query.length() + 1];
+                for (int j = 0; j <= query.length(); j++) {
+                    rows[0][j] = j;
+                }
+            } else {
+                rows = null;
+            }
+            nodes = (Node<Value>[]) new Node<?>[16];
+            depths = new int[16];
+            push(x, prefix.length());
+        }
+
+        // computes rows[d+1] for the prefix extended by c; returns its minimum
+        private int extend(int d, char c) {
+            int m = query.length();
+            int[] row = rows[d];
+            if (rows[d + 1] == null) {
+                rows[d + 1] = new int[m + 1];
+            }
+            int[] next = rows[d + 1];
+            next[0] = d + 1;
+            int min = next[0];
+            for (int j = 1; j <= m; j++) {
+                int cost = query.charAt(j - 1) == c ? 0 : 1;
+                next[j] = Math.min(row[j - 1] + cost, Math.min(row[j], next[j - 1]) + 1);
+                min = Math.min(min, next[j]);
             }
-            if (i < pattern.length() - 1) {
-                collect(x.mid, prefix.append(x.c), i+1, pattern, queue);
-                prefix.deleteCharAt(prefix.length() - 1);
+            return min;
+        }
+
+        private void push(Node<Value> x, int depth) {
+            if (x == null) {
+                return;
             }
+            if (top == nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * top);
+                depths = Arrays.copyOf(depths, 2 * top);
+            }
+            nodes[top] = x;
+            depths[top++] = depth;
         }
-        if (c == '.' || c > x.c) {
-            collect(x.right, prefix, i, pattern, queue);
+
+        @Override
+        public boolean hasNext() {
+            if (remaining == 0) {
+                return false;
+            }
+            while (next == null && top > 0) {
+                Node<Value> x = nodes[--top];
+                int d = depths[top];
+                if (d < 0) {
+                    d = ~d;
+                    prefix.setLength(d);
+                    prefix.append(x.c);
+                    boolean wanted = true; // the key of x, if it has one, is to be returned
+                    boolean deeper = true; // keys below x may be
+                    if (query != null) {
+                        // the distance to any longer key is at least the row minimum
+                        deeper = extend(d, x.c) <= k;
+                        wanted = rows[d + 1][query.length()] <= k;
+                    } else if (pattern != null) {
+                        wanted = d == pattern.length() - 1;
+                        deeper = d < pattern.length() - 1;
+                    }
+                    if (wanted && x.val != null) {
+                        next = prefix.toString();
+                    }
+                    if (deeper) {
+                        push(x.mid, d + 1);
+                    }
+                    continue;
+                }
+                // pushed in reverse of the order they are run
+                char c = pattern == null ? '.' : pattern.charAt(d);
+                if (c == '.' || c > x.c) {
+                    push(x.right, d);
+                }
+                if (c == '.' || c == x.c) {
+                    push(x, ~d);
+                }
+                if (c == '.' || c < x.c) {
+                    push(x.left, d);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String key = next;
+            next = null;
+            remaining--;
+            return key;
         }
     }
 